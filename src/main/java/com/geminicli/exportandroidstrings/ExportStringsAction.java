@@ -8,31 +8,32 @@ package com.geminicli.exportandroidstrings;
  * 如何使用：
  * 1. 在 Android Studio 中安装此插件。
  * 2. 在顶部菜单栏中，点击 'Tools' -> 'Export and Translate Strings...'。
- * 3. 在弹出的对话框中，选择所需的功能（导出或翻译）。
+ * 3. 在弹出的对话框中，选择所需的功能（导出、翻译或分析字符串使用情况）。
  * 4. 根据所选功能提供必要的输入（模块目录、导出目录或 Google API Key）。
  * 5. 点击 'Run' 按钮执行操作。
+ * 对话框打开时只构建当前功能需要的界面，翻译选项面板在第一次选择翻译时才创建；
+ * 各服务类（StringResourceParser、StringExporter 等）是按需创建的项目级服务，
+ * 并在选择功能后于后台线程中预热（导出预加载 POI，翻译预先建立 HTTP 连接）。
  */
 
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
 import com.intellij.openapi.fileChooser.FileChooserFactory;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.NotNullLazyValue;
 import com.intellij.openapi.vfs.VfsUtil;
-import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileVisitor;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 public class ExportStringsAction extends AnAction {
@@ -41,6 +42,12 @@ public class ExportStringsAction extends AnAction {
     private static final String LAST_MODULE_PATH_KEY = "ExportAndroidStrings.lastModulePath";
     private static final String LAST_API_KEY = "ExportAndroidStrings.apiKey";
     private static final String LAST_PROJECT_ID_KEY = "ExportAndroidStrings.projectId";
+    private static final String LAST_MEMORY_THRESHOLD_KEY = "ExportAndroidStrings.memoryThreshold";
+    private static final String LAST_APPLY_MEMORY_KEY = "ExportAndroidStrings.applyMemoryMatches";
+    private static final String PARALLEL_PARSE_KEY = "ExportAndroidStrings.parallelParse";
+    private static final String SKIP_UNUSED_KEY = "ExportAndroidStrings.skipUnusedKeys";
+    private static final String OFF_HEAP_KEY = "ExportAndroidStrings.offHeap";
+    private static final String OFF_HEAP_BUDGET_KEY = "ExportAndroidStrings.offHeapBudgetMb";
 
     @Override
     public void actionPerformed(@NotNull AnActionEvent e) {
@@ -69,11 +76,14 @@ public class ExportStringsAction extends AnAction {
         JPanel functionPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JRadioButton exportRadio = new JRadioButton("Export All Strings", true);
         JRadioButton translateRadio = new JRadioButton("Translate Missing Strings");
+        JRadioButton analyzeRadio = new JRadioButton("Analyze String Usage");
         ButtonGroup functionGroup = new ButtonGroup();
         functionGroup.add(exportRadio);
         functionGroup.add(translateRadio);
+        functionGroup.add(analyzeRadio);
         functionPanel.add(exportRadio);
         functionPanel.add(translateRadio);
+        functionPanel.add(analyzeRadio);
         panel.add(functionPanel, gbc);
 
         // --- Module Directory Selection ---
@@ -92,6 +102,30 @@ public class ExportStringsAction extends AnAction {
         JButton browseModuleButton = new JButton("Browse...");
         panel.add(browseModuleButton, gbc);
 
+        // --- Parse Options ---
+        gbc.gridy++;
+        gbc.gridx = 0;
+        gbc.gridwidth = 3;
+        JCheckBox parallelParseCheckBox = new JCheckBox("Parse locale files in parallel",
+                PropertiesComponent.getInstance().getBoolean(PARALLEL_PARSE_KEY, true));
+        panel.add(parallelParseCheckBox, gbc);
+
+        gbc.gridy++;
+        JCheckBox skipUnusedCheckBox = new JCheckBox("Skip unused keys (duplicate default text is translated once)",
+                PropertiesComponent.getInstance().getBoolean(SKIP_UNUSED_KEY, false));
+        panel.add(skipUnusedCheckBox, gbc);
+
+        gbc.gridy++;
+        JPanel offHeapPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        JCheckBox offHeapCheckBox = new JCheckBox("Keep parsed strings off-heap, memory budget (MB):",
+                PropertiesComponent.getInstance().getBoolean(OFF_HEAP_KEY, false));
+        JTextField offHeapBudgetField = new JTextField(PropertiesComponent.getInstance().getValue(OFF_HEAP_BUDGET_KEY, "64"), 6);
+        offHeapBudgetField.setEnabled(offHeapCheckBox.isSelected());
+        offHeapCheckBox.addActionListener(e1 -> offHeapBudgetField.setEnabled(offHeapCheckBox.isSelected()));
+        offHeapPanel.add(offHeapCheckBox);
+        offHeapPanel.add(offHeapBudgetField);
+        panel.add(offHeapPanel, gbc);
+
         // --- Export Directory Panel ---
         JPanel exportPanel = new JPanel(new GridBagLayout());
         GridBagConstraints exportGbc = new GridBagConstraints();
@@ -114,60 +148,51 @@ public class ExportStringsAction extends AnAction {
         gbc.gridwidth = 3;
         panel.add(exportPanel, gbc);
 
-        // --- Translation Options Panel (Project ID and API Key) ---
-        JPanel translationOptionsPanel = new JPanel(new GridBagLayout());
-        GridBagConstraints transGbc = new GridBagConstraints();
-        transGbc.insets = new Insets(5, 5, 5, 5);
-        transGbc.fill = GridBagConstraints.HORIZONTAL;
-
-        // Project ID field
-        transGbc.gridx = 0;
-        transGbc.gridy = 0;
-        translationOptionsPanel.add(new JLabel("Project ID:"), transGbc);
-
-        transGbc.gridx = 1;
-        transGbc.weightx = 1.0;
-        JTextField projectIdField = new JTextField(PropertiesComponent.getInstance().getValue(LAST_PROJECT_ID_KEY, ""));
-        translationOptionsPanel.add(projectIdField, transGbc);
-
-        // API Key field
-        transGbc.gridx = 0;
-        transGbc.gridy = 1;
-        translationOptionsPanel.add(new JLabel("Google API Key:"), transGbc);
-
-        transGbc.gridx = 1;
-        transGbc.weightx = 1.0;
-        JPasswordField apiKeyField = new JPasswordField(PropertiesComponent.getInstance().getValue(LAST_API_KEY, ""));
-        translationOptionsPanel.add(apiKeyField, transGbc);
-
-        // gcloud auth instructions
-        transGbc.gridx = 0;
-        transGbc.gridy = 2; // Place it below Project ID and API Key (if it were there)
-        transGbc.gridwidth = 2; // Span across two columns
-        JLabel authHintLabel = new JLabel("<html><p>Authentication is via Application Default Credentials (ADC).<br>" +
-                "Run <b><code>gcloud auth application-default login</code></b> in your terminal.</p>" +
-                "<p>More info: <a href=\"https://cloud.google.com/docs/authentication/getting-started\">Google Cloud Auth Docs</a></p></html>");
-        translationOptionsPanel.add(authHintLabel, transGbc);
-
-        
+        // --- Translation Options Panel (Project ID and API Key), built the first time Translate is selected ---
+        JPanel translationOptionsContainer = new JPanel(new BorderLayout());
+        NotNullLazyValue<TranslationOptionsPanel> translationOptions = NotNullLazyValue.createValue(() -> {
+            TranslationOptionsPanel options = new TranslationOptionsPanel();
+            translationOptionsContainer.add(options, BorderLayout.CENTER);
+            return options;
+        });
 
         gbc.gridy++;
         gbc.gridx = 0;
         gbc.gridwidth = 3;
-        panel.add(translationOptionsPanel, gbc);
-        translationOptionsPanel.setVisible(false); // Initially hidden
+        panel.add(translationOptionsContainer, gbc);
+        translationOptionsContainer.setVisible(false); // Initially hidden
 
         // --- Action Listeners for Radio Buttons ---
         exportRadio.addActionListener(e1 -> {
             exportPanel.setVisible(true);
-            translationOptionsPanel.setVisible(false);
+            translationOptionsContainer.setVisible(false);
             dialog.pack();
+            StringExporter.getInstance(project).warmUp();
         });
 
         translateRadio.addActionListener(e1 -> {
             exportPanel.setVisible(false);
-            translationOptionsPanel.setVisible(true);
+            translationOptions.getValue();
+            translationOptionsContainer.setVisible(true);
             dialog.pack();
+            // Load the HTTP stack and open the connection while the user fills in the options
+            ApplicationManager.getApplication().executeOnPooledThread(() -> TranslationTransport.getInstance().prewarm());
+        });
+
+        analyzeRadio.addActionListener(e1 -> {
+            exportPanel.setVisible(false);
+            translationOptionsContainer.setVisible(false);
+            dialog.pack();
+        });
+
+        // Export is selected initially: load POI in the background once the dialog is up
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent windowEvent) {
+                if (exportRadio.isSelected()) {
+                    StringExporter.getInstance(project).warmUp();
+                }
+            }
         });
 
         // --- Run Button ---
@@ -207,26 +232,38 @@ public class ExportStringsAction extends AnAction {
                 return;
             }
             PropertiesComponent.getInstance().setValue(LAST_MODULE_PATH_KEY, modulePath);
+            PropertiesComponent.getInstance().setValue(PARALLEL_PARSE_KEY, parallelParseCheckBox.isSelected(), true);
+            PropertiesComponent.getInstance().setValue(SKIP_UNUSED_KEY, skipUnusedCheckBox.isSelected());
+            long offHeapBudgetMb;
+            try {
+                offHeapBudgetMb = Long.parseLong(offHeapBudgetField.getText().trim());
+            } catch (NumberFormatException ex) {
+                offHeapBudgetMb = -1;
+            }
+            if (offHeapCheckBox.isSelected() && offHeapBudgetMb < 0) {
+                Messages.showErrorDialog(project, "Off-heap memory budget must be a whole number of megabytes.", "Error");
+                return;
+            }
+            PropertiesComponent.getInstance().setValue(OFF_HEAP_KEY, offHeapCheckBox.isSelected());
+            PropertiesComponent.getInstance().setValue(OFF_HEAP_BUDGET_KEY, offHeapBudgetField.getText().trim());
 
-            // Instantiate service classes
-            StringResourceParser parser = new StringResourceParser(project);
-            StringExporter exporter = new StringExporter(project);
-            StringResourceWriter writer = new StringResourceWriter(project);
-            StringTranslator translator = new StringTranslator(project, parser, writer);
+            // Passed with the run rather than set on the shared parser service
+            StringResourceParser.Options parseOptions = new StringResourceParser.Options(parallelParseCheckBox.isSelected(),
+                    offHeapCheckBox.isSelected() ? offHeapBudgetMb * 1024 * 1024 : -1);
 
-            if (exportRadio.isSelected()) {
+            if (exportRadio.isSelected() || analyzeRadio.isSelected()) {
                 String exportPath = exportDirField.getText();
-                if (exportPath.isEmpty()) {
-                    Messages.showErrorDialog(project, "Please select an export directory.", "Error");
-                    return;
+                if (exportRadio.isSelected()) {
+                    if (exportPath.isEmpty()) {
+                        Messages.showErrorDialog(project, "Please select an export directory.", "Error");
+                        return;
+                    }
+                    PropertiesComponent.getInstance().setValue(LAST_EXPORT_PATH_KEY, exportPath);
                 }
-                PropertiesComponent.getInstance().setValue(LAST_EXPORT_PATH_KEY, exportPath);
 
-                // Collect all strings for export
-                Map<String, Map<String, String>> allStrings = new HashMap<>();
-                Set<String> locales = new HashSet<>();
                 String moduleName = new File(modulePath).getName();
 
+                StringTable table = null;
                 try {
                     VirtualFile moduleRoot = VfsUtil.findFileByIoFile(new File(modulePath), true);
                     if (moduleRoot == null || !moduleRoot.isDirectory()) {
@@ -254,41 +291,43 @@ public class ExportStringsAction extends AnAction {
                         return;
                     }
 
-                    VfsUtilCore.visitChildrenRecursively(resDir, new VirtualFileVisitor<Void>() {
-                        @Override
-                        public boolean visitFile(@NotNull VirtualFile file) {
-                            if (file.isDirectory() && file.getName().startsWith("values")) {
-                                VirtualFile stringsXml = file.findChild("strings.xml");
-                                if (stringsXml != null && stringsXml.exists() && !stringsXml.isDirectory()) {
-                                    parser.parseStringsXml(stringsXml, allStrings, locales);
-                                }
-                            }
-                            return true;
-                        }
-                    });
-
-                    // Debugging: Print allStrings and locales
-                    System.out.println("---" + " Debugging allStrings ---");
-                    for (Map.Entry<String, Map<String, String>> entry : allStrings.entrySet()) {
-                        System.out.println("Key: " + entry.getKey());
-                        Map<String, String> subMap = entry.getValue();
-                        for (Map.Entry<String, String> subEntry : subMap.entrySet()) {
-                            System.out.println("   " + subEntry.getKey() + "=" + subEntry.getValue());
+                    // Scan every XML file of the values* directories and parse the ones holding strings
+                    // Project services are created on first use, so only the selected mode's ones are loaded
+                    table = StringResourceParser.getInstance(project).parseWithProgress(resDir, parseOptions);
+                    if (table == null) {
+                        return; // Parsing was cancelled
+                    }
+
+                    // Find keys that are never referenced, and keys sharing their default text
+                    StringUsageReport usageReport = null;
+                    if (analyzeRadio.isSelected() || skipUnusedCheckBox.isSelected()) {
+                        usageReport = StringUsageAnalyzer.getInstance(project).analyzeWithProgress(moduleRoot, table);
+                        if (usageReport == null) {
+                            return; // Analysis was cancelled
                         }
                     }
-                    System.out.println("---" + " Debugging locales ---");
-                    System.out.println("Locales: " + locales);
-                    System.out.println("--------------------------");
+                    if (analyzeRadio.isSelected()) {
+                        Messages.showMessageDialog(project, usageReport.getSummary(), "String Usage", Messages.getInformationIcon());
+                        dialog.dispose();
+                        return;
+                    }
 
-                    exporter.writeStringsToExcel(exportPath, moduleName, allStrings, locales);
+                    StringExporter.getInstance(project).writeStringsToExcel(exportPath, moduleName, table, usageReport);
+                    StringTableSnapshot.saveInBackground(modulePath, table);
+                    table = null; // Disposed by the snapshot writer
 
                 } catch (Exception ex) {
                     Messages.showErrorDialog(project, "Error during string export: " + ex.getMessage(), "Export Error");
+                } finally {
+                    if (table != null) {
+                        table.dispose();
+                    }
                 }
 
             } else { // Translate is selected
-                String projectId = projectIdField.getText();
-                String apiKey = new String(apiKeyField.getPassword());
+                TranslationOptionsPanel options = translationOptions.getValue();
+                String projectId = options.projectIdField.getText();
+                String apiKey = new String(options.apiKeyField.getPassword());
 
                 if (projectId.isEmpty()) {
                     Messages.showErrorDialog(project, "Please enter your Google Cloud Project ID.", "Error");
@@ -298,9 +337,24 @@ public class ExportStringsAction extends AnAction {
                     Messages.showErrorDialog(project, "Please enter your Google API Key.", "Error");
                     return;
                 }
+                double memoryThreshold;
+                try {
+                    memoryThreshold = Double.parseDouble(options.memoryThresholdField.getText().trim());
+                } catch (NumberFormatException ex) {
+                    memoryThreshold = -1;
+                }
+                if (memoryThreshold < TranslationMemory.MIN_THRESHOLD || memoryThreshold > 1) {
+                    Messages.showErrorDialog(project, "Memory match threshold must be a number between "
+                            + TranslationMemory.MIN_THRESHOLD + " and 1.", "Error");
+                    return;
+                }
                 PropertiesComponent.getInstance().setValue(LAST_PROJECT_ID_KEY, projectId);
                 PropertiesComponent.getInstance().setValue(LAST_API_KEY, apiKey);
-                translator.translateMissingStrings(modulePath, projectId, apiKey);
+                PropertiesComponent.getInstance().setValue(LAST_MEMORY_THRESHOLD_KEY, options.memoryThresholdField.getText().trim());
+                PropertiesComponent.getInstance().setValue(LAST_APPLY_MEMORY_KEY, options.applyMemoryCheckBox.isSelected());
+                StringTranslator.getInstance(project).translateMissingStrings(modulePath, projectId, apiKey, memoryThreshold,
+                        options.applyMemoryCheckBox.isSelected(),
+                        skipUnusedCheckBox.isSelected() ? StringUsageAnalyzer.getInstance(project) : null, parseOptions);
             }
             dialog.dispose();
         });
@@ -308,4 +362,66 @@ public class ExportStringsAction extends AnAction {
         dialog.pack();
         dialog.setVisible(true);
     }
+
+    private static class TranslationOptionsPanel extends JPanel {
+        final JTextField projectIdField;
+        final JPasswordField apiKeyField;
+        final JTextField memoryThresholdField;
+        final JCheckBox applyMemoryCheckBox;
+
+        TranslationOptionsPanel() {
+            super(new GridBagLayout());
+            GridBagConstraints transGbc = new GridBagConstraints();
+            transGbc.insets = new Insets(5, 5, 5, 5);
+            transGbc.fill = GridBagConstraints.HORIZONTAL;
+
+            // Project ID field
+            transGbc.gridx = 0;
+            transGbc.gridy = 0;
+            add(new JLabel("Project ID:"), transGbc);
+
+            transGbc.gridx = 1;
+            transGbc.weightx = 1.0;
+            projectIdField = new JTextField(PropertiesComponent.getInstance().getValue(LAST_PROJECT_ID_KEY, ""));
+            add(projectIdField, transGbc);
+
+            // API Key field
+            transGbc.gridx = 0;
+            transGbc.gridy = 1;
+            add(new JLabel("Google API Key:"), transGbc);
+
+            transGbc.gridx = 1;
+            transGbc.weightx = 1.0;
+            apiKeyField = new JPasswordField(PropertiesComponent.getInstance().getValue(LAST_API_KEY, ""));
+            add(apiKeyField, transGbc);
+
+            // gcloud auth instructions
+            transGbc.gridx = 0;
+            transGbc.gridy = 2; // Place it below Project ID and API Key (if it were there)
+            transGbc.gridwidth = 2; // Span across two columns
+            JLabel authHintLabel = new JLabel("<html><p>Authentication is via Application Default Credentials (ADC).<br>" +
+                    "Run <b><code>gcloud auth application-default login</code></b> in your terminal.</p>" +
+                    "<p>More info: <a href=\"https://cloud.google.com/docs/authentication/getting-started\">Google Cloud Auth Docs</a></p></html>");
+            add(authHintLabel, transGbc);
+
+            // Translation memory options
+            transGbc.gridx = 0;
+            transGbc.gridy = 3;
+            transGbc.gridwidth = 1;
+            transGbc.weightx = 0;
+            add(new JLabel("Memory Match Threshold:"), transGbc);
+
+            transGbc.gridx = 1;
+            transGbc.weightx = 1.0;
+            memoryThresholdField = new JTextField(PropertiesComponent.getInstance().getValue(LAST_MEMORY_THRESHOLD_KEY, "0.9"));
+            add(memoryThresholdField, transGbc);
+
+            transGbc.gridx = 0;
+            transGbc.gridy = 4;
+            transGbc.gridwidth = 2;
+            applyMemoryCheckBox = new JCheckBox("Apply memory matches without calling the API",
+                    PropertiesComponent.getInstance().getBoolean(LAST_APPLY_MEMORY_KEY, false));
+            add(applyMemoryCheckBox, transGbc);
+        }
+    }
 }
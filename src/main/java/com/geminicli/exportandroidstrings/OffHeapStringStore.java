@@ -0,0 +1,230 @@
+package com.geminicli.exportandroidstrings;
+
+/**
+ * OffHeapStringStore 类在 Java 堆之外保存字符串，用于处理非常大的模块时减轻 IDE 堆的压力。
+ * 字符串以 UTF-8 编码追加写入 1 MB 大小的块中，调用方只持有一个 int 句柄：
+ * - 在内存预算以内，块使用直接内存（ByteBuffer.allocateDirect）；
+ * - 超过预算后，新的块映射到一个临时文件（FileChannel.map），由操作系统按需换入换出。
+ * 每条记录为 4 字节长度加上 UTF-8 字节，起始位置按 4 字节对齐，句柄即起始位置除以 4，因此最多可以保存 8 GB 的数据。
+ * 写入是串行的（同步），读取不加锁，可以在多个线程中同时进行。
+ * 因为读取不加锁，close 不会强制释放缓冲区：直接内存和文件映射在缓冲区被垃圾回收时才真正释放。
+ * 临时文件位于系统临时目录的 exportAndroidStrings 子目录中，以 DELETE_ON_CLOSE 打开（Unix 上打开后即被删除）；
+ * Windows 上仍被映射的文件无法在 close 时删除，这些残留文件会在下一次写入临时文件时被清理，
+ * 不使用 deleteOnExit，以免每次运行都在 IDE 的整个生命周期内累积一条记录。
+ *
+ * 如何使用：
+ * 1. 实例化 OffHeapStringStore 类，传入直接内存的预算（字节数）。
+ *    例如：OffHeapStringStore store = new OffHeapStringStore(64L * 1024 * 1024);
+ * 2. 调用 put 方法保存字符串并获得句柄，调用 get 方法根据句柄读取字符串。
+ *    例如：int handle = store.put(value); String value = store.get(handle);
+ * 3. 调用 contains 方法检查某个字符串的 UTF-8 字节中是否包含某个字节，无需解码。
+ *    例如：if (store.contains(handle, (byte) '@')) { ... }
+ * 4. 使用完毕后调用 close 方法释放内存并删除临时文件。
+ */
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class OffHeapStringStore implements Closeable {
+
+    private static final Logger LOG = Logger.getInstance(OffHeapStringStore.class);
+
+    static final int CHUNK_SIZE = 1 << 20;
+    private static final String SPILL_FILE_PREFIX = "strings";
+    private static final String SPILL_FILE_SUFFIX = ".spill";
+
+    private final long memoryBudget;
+    private volatile ByteBuffer[] chunks = new ByteBuffer[16];
+    private int chunkCount;
+    private int spilledChunkCount;
+    private long position;
+    private Path spillFile;
+    private FileChannel spillChannel;
+
+    /**
+     * @param memoryBudget bytes of direct memory to use before spilling to a temp file
+     */
+    public OffHeapStringStore(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Stores {@code value} and returns its handle.
+     */
+    public synchronized int put(@NotNull String value) {
+        if (chunks == null) {
+            throw new IllegalStateException("Store is closed");
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long start = (position + 3) & ~3L;
+        if ((start >>> 2) > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Off-heap string store is full");
+        }
+        long end = start + 4 + bytes.length;
+        while ((long) chunkCount * CHUNK_SIZE < end) {
+            addChunk();
+        }
+
+        ByteBuffer[] currentChunks = chunks;
+        currentChunks[(int) (start / CHUNK_SIZE)].putInt((int) (start % CHUNK_SIZE), bytes.length);
+        long offset = start + 4;
+        int written = 0;
+        while (written < bytes.length) {
+            ByteBuffer chunk = currentChunks[(int) (offset / CHUNK_SIZE)].duplicate();
+            chunk.position((int) (offset % CHUNK_SIZE));
+            int length = Math.min(chunk.remaining(), bytes.length - written);
+            chunk.put(bytes, written, length);
+            written += length;
+            offset += length;
+        }
+        position = end;
+        return (int) (start >>> 2);
+    }
+
+    /**
+     * Returns the string stored under {@code handle}.
+     */
+    @NotNull
+    public String get(int handle) {
+        ByteBuffer[] currentChunks = chunks;
+        if (currentChunks == null) {
+            throw new IllegalStateException("Store is closed");
+        }
+        long start = (long) handle << 2;
+        int length = currentChunks[(int) (start / CHUNK_SIZE)].getInt((int) (start % CHUNK_SIZE));
+        byte[] bytes = new byte[length];
+        long offset = start + 4;
+        for (int i = 0; i < length; ) {
+            ByteBuffer chunk = currentChunks[(int) (offset / CHUNK_SIZE)];
+            int chunkOffset = (int) (offset % CHUNK_SIZE);
+            int count = Math.min(CHUNK_SIZE - chunkOffset, length - i);
+            for (int j = 0; j < count; j++) {
+                bytes[i + j] = chunk.get(chunkOffset + j);
+            }
+            i += count;
+            offset += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns true if the UTF-8 bytes of the string stored under {@code handle} contain {@code b}.
+     * For an ASCII character this is the same as the decoded string containing it.
+     */
+    public boolean contains(int handle, byte b) {
+        ByteBuffer[] currentChunks = chunks;
+        if (currentChunks == null) {
+            throw new IllegalStateException("Store is closed");
+        }
+        long start = (long) handle << 2;
+        int length = currentChunks[(int) (start / CHUNK_SIZE)].getInt((int) (start % CHUNK_SIZE));
+        long offset = start + 4;
+        for (int i = 0; i < length; ) {
+            ByteBuffer chunk = currentChunks[(int) (offset / CHUNK_SIZE)];
+            int chunkOffset = (int) (offset % CHUNK_SIZE);
+            int count = Math.min(CHUNK_SIZE - chunkOffset, length - i);
+            for (int j = 0; j < count; j++) {
+                if (chunk.get(chunkOffset + j) == b) {
+                    return true;
+                }
+            }
+            i += count;
+            offset += count;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of bytes written so far, in direct memory and in the temp file.
+     */
+    public synchronized long getSize() {
+        return position;
+    }
+
+    /**
+     * Returns the number of bytes kept in the temp file rather than in direct memory.
+     */
+    public synchronized long getSpilledSize() {
+        return (long) spilledChunkCount * CHUNK_SIZE;
+    }
+
+    private void addChunk() {
+        ByteBuffer chunk;
+        if ((long) (chunkCount + 1) * CHUNK_SIZE <= memoryBudget) {
+            chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        } else {
+            try {
+                if (spillChannel == null) {
+                    Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "exportAndroidStrings");
+                    Files.createDirectories(spillDirectory);
+                    deleteStaleSpillFiles(spillDirectory);
+                    spillFile = Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+                    spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                            StandardOpenOption.DELETE_ON_CLOSE);
+                    LOG.info("String table exceeds the off-heap memory budget, spilling to " + spillFile);
+                }
+                chunk = spillChannel.map(FileChannel.MapMode.READ_WRITE, (long) spilledChunkCount * CHUNK_SIZE, CHUNK_SIZE);
+                spilledChunkCount++;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not spill strings to a temp file", e);
+            }
+        }
+        ByteBuffer[] currentChunks = chunks;
+        if (chunkCount == currentChunks.length) {
+            currentChunks = Arrays.copyOf(currentChunks, chunkCount * 2);
+        }
+        currentChunks[chunkCount++] = chunk;
+        chunks = currentChunks;
+    }
+
+    /**
+     * Removes the temp files of earlier stores that could not be deleted on close because they were
+     * still mapped (Windows). Files of stores still in use are open and cannot be deleted there either;
+     * on other systems DELETE_ON_CLOSE has already removed them when they were opened.
+     */
+    private static void deleteStaleSpillFiles(Path spillDirectory) {
+        try (DirectoryStream<Path> staleFiles = Files.newDirectoryStream(spillDirectory, SPILL_FILE_PREFIX + "*" + SPILL_FILE_SUFFIX)) {
+            for (Path staleFile : staleFiles) {
+                try {
+                    Files.deleteIfExists(staleFile);
+                } catch (IOException e) {
+                    // Still in use
+                }
+            }
+        } catch (IOException e) {
+            LOG.info("Could not clean up " + spillDirectory, e);
+        }
+    }
+
+    /**
+     * Drops the buffers and closes the temp file. Handles must not be used afterwards.
+     * The buffers are not unmapped or freed explicitly, since a reader on another thread may still
+     * hold a chunk; their memory and the mappings are released when they are garbage collected.
+     */
+    @Override
+    public synchronized void close() {
+        chunks = null;
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+                // DELETE_ON_CLOSE cannot remove a file that is still mapped on Windows; deleteStaleSpillFiles does later
+            } catch (IOException e) {
+                LOG.warn("Could not delete " + spillFile, e);
+            }
+            spillChannel = null;
+        }
+    }
+}
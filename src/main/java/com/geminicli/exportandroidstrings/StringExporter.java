@@ -3,13 +3,19 @@ package com.geminicli.exportandroidstrings;
 /**
  * StringExporter 类负责将 Android 字符串资源导出到 Excel (.xlsx) 文件。
  * 它接收解析后的字符串数据和本地化信息，并将其写入结构化的 Excel 文件中。
+ * plurals 和 string-array 的 item 以组合 key（"name#quantity"、"name[index]"）各占一行。
  *
  * 如何使用：
- * 1. 实例化 StringExporter 类，传入当前项目对象。
- * 2. 调用 writeStringsToExcel 方法，提供导出路径、模块名称、所有字符串数据和本地化信息。
- *    例如：exporter.writeStringsToExcel(exportPath, moduleName, allStrings, locales);
+ * 1. 通过 StringExporter.getInstance(project) 获取服务实例（在 plugin.xml 中注册为 projectService，首次使用时才创建）。
+ *    可选：调用 warmUp 方法在后台线程中提前加载 POI 的类，缩短第一次导出的耗时。
+ * 2. 调用 writeStringsToExcel 方法，提供导出路径、模块名称和解析得到的字符串表。
+ *    例如：exporter.writeStringsToExcel(exportPath, moduleName, table);
+ *    如果同时传入字符串使用情况分析的结果（见 StringUsageReport），未使用的 key 不会被导出；
+ *    默认文本重复的 key 仍然会被导出，与翻译写入的 key 保持一致。
  */
 
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import org.apache.poi.ss.usermodel.Row;
@@ -17,28 +23,58 @@ import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 public class StringExporter {
 
+    private static final Logger LOG = Logger.getInstance(StringExporter.class);
+
     private final Project project;
+    private final AtomicBoolean warmedUp = new AtomicBoolean();
 
     public StringExporter(@NotNull Project project) {
         this.project = project;
     }
 
+    public static StringExporter getInstance(@NotNull Project project) {
+        return project.getService(StringExporter.class);
+    }
+
+    /**
+     * Loads POI's workbook and OOXML writer classes on a pooled thread, once, so that the
+     * first export does not pay for them on the EDT.
+     */
+    public void warmUp() {
+        if (!warmedUp.compareAndSet(false, true)) {
+            return;
+        }
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try (Workbook workbook = new XSSFWorkbook()) {
+                workbook.createSheet("Strings").createRow(0).createCell(0).setCellValue("");
+                workbook.write(OutputStream.nullOutputStream());
+            } catch (IOException | RuntimeException e) {
+                LOG.debug("POI warm-up failed", e);
+            }
+        });
+    }
+
+    public void writeStringsToExcel(@NotNull String exportPath, @NotNull String moduleName,
+                                    @NotNull StringTable table) {
+        writeStringsToExcel(exportPath, moduleName, table, null);
+    }
+
     public void writeStringsToExcel(@NotNull String exportPath, @NotNull String moduleName,
-                                    @NotNull Map<String, Map<String, String>> allStrings,
-                                    @NotNull Set<String> locales) {
+                                    @NotNull StringTable table, @Nullable StringUsageReport usageReport) {
         // Generate timestamp for filename
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("_yyyyMMdd_HHmmss");
         String timestamp = LocalDateTime.now().format(formatter);
@@ -49,7 +85,7 @@ public class StringExporter {
             Sheet sheet = workbook.createSheet("Strings");
 
             // Prepare header
-            List<String> sortedLocales = locales.stream()
+            List<String> sortedLocales = table.getLocales().stream()
                     .sorted((l1, l2) -> {
                         if ("default".equals(l1)) return -1;
                         if ("default".equals(l2)) return 1;
@@ -67,17 +103,19 @@ public class StringExporter {
 
             // Write data rows
             int rowNum = 1;
-            for (Map.Entry<String, Map<String, String>> entry : allStrings.entrySet()) {
-                String key = entry.getKey();
-                Map<String, String> localizedStrings = entry.getValue();
-
+            // Sorted so the items of one plurals or string-array ("name#quantity", "name[index]") stay together, in item order
+            List<String> sortedKeys = table.getKeys().stream()
+                    .filter(key -> usageReport == null || !usageReport.isUnused(key))
+                    .sorted(StringResourceType.KEY_ORDER)
+                    .collect(Collectors.toList());
+            for (String key : sortedKeys) {
                 Row row = sheet.createRow(rowNum++);
                 row.createCell(0).setCellValue(moduleName);
                 row.createCell(1).setCellValue(key);
 
                 for (int i = 0; i < sortedLocales.size(); i++) {
-                    String locale = sortedLocales.get(i);
-                    row.createCell(i + 2).setCellValue(localizedStrings.getOrDefault(locale, ""));
+                    String value = table.get(key, sortedLocales.get(i));
+                    row.createCell(i + 2).setCellValue(value != null ? value : "");
                 }
             }
 
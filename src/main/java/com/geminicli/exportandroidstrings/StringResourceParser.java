@@ -1,19 +1,34 @@
 package com.geminicli.exportandroidstrings;
 
 /**
- * StringResourceParser 类负责解析 Android 项目中的 strings.xml 文件。
- * 它能够从文件中提取字符串资源，并根据目录名称识别对应的语言环境。
+ * StringResourceParser 类负责解析 Android 项目中的字符串资源文件（values* 目录下的 strings.xml 以及其他包含字符串的 XML 文件）。
+ * 它能够从文件中提取字符串资源，并根据目录名称识别对应的语言环境，同时记录每个 key 所在的文件。
+ * string、plurals 和 string-array 在一次遍历中读取，plurals 和 string-array 的每个 item
+ * 使用组合 key（"name#quantity"、"name[index]"，见 StringResourceType）存入字符串表。
+ * 标记为 translatable="false" 的 string、plurals 和 string-array 不会被读取。
+ * 支持并行解析模式：每个语言环境文件作为一个独立的 ReadAction.nonBlocking 任务，
+ * 在有界线程池中执行，结果合并到线程安全的 StringTable 中；
+ * 当 IDE 开始写操作时，这些任务会自动取消并在写操作结束后重新开始，不会阻塞 IDE 的写操作。
  *
  * 如何使用：
- * 1. 实例化 StringResourceParser 类，传入当前项目对象。
- * 2. 调用 parseStringsXml 方法来解析用于导出的所有字符串。
- *    例如：parser.parseStringsXml(stringsXmlFile, allStrings, locales);
- * 3. 调用 parseStringsXmlForTranslation 方法来解析用于翻译的单个语言环境的字符串。
- *    例如：parser.parseStringsXmlForTranslation(stringsXmlFile, localeStrings);
+ * 1. 通过 StringResourceParser.getInstance(project) 获取服务实例（在 plugin.xml 中注册为 projectService，首次使用时才创建）。
+ * 2. 创建本次解析的选项（StringResourceParser.Options）：是否并行解析，以及是否将解析得到的文本保存在堆外
+ *    （见 OffHeapStringStore，超过内存预算的部分写入临时文件）。服务本身不保存任何与某次运行相关的状态，
+ *    因此同时进行的多次解析互不影响。
+ *    例如：StringResourceParser.Options options = new StringResourceParser.Options(true, -1);
+ * 3. 在 EDT 上调用 parseWithProgress 方法，在模态进度条下扫描并解析 res 目录中的字符串资源文件
+ *    （文件查找见 StringResourceScanner）。
+ *    例如：StringTable table = parser.parseWithProgress(resDir, options);
+ *    如果已经在后台线程中并且已有文件列表，可直接调用 parseAll 方法。
  * 4. 调用 getLocaleFromValuesDir 方法来从 values 目录名称中提取语言环境代码。
  *    例如：String locale = parser.getLocaleFromValuesDir(dirName);
  */
 
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -21,72 +36,249 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.concurrency.CancellablePromise;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 public class StringResourceParser {
 
+    // "fr", "haw" or the BCP 47 form "b+es+419"
+    private static final Pattern LANGUAGE_QUALIFIER = Pattern.compile("[a-z]{2,3}|b\\+[a-z]{2,3}(\\+\\w+)*");
+    // The only qualifier allowed after a language, e.g. "-rUS"; the BCP 47 form carries its region itself
+    private static final Pattern REGION_QUALIFIER = Pattern.compile("-r[A-Z]{2}");
+    // Two or three letter configuration qualifiers that are not languages
+    private static final Set<String> NON_LANGUAGE_QUALIFIERS = new HashSet<>(Arrays.asList("car", "hdr"));
+
     private final Project project;
+    private final StringResourceScanner scanner;
 
     public StringResourceParser(@NotNull Project project) {
         this.project = project;
+        this.scanner = new StringResourceScanner(this);
     }
 
-    public void parseStringsXml(@NotNull VirtualFile stringsXmlFile,
-                                @NotNull Map<String, Map<String, String>> allStrings,
-                                @NotNull Set<String> locales) {
-        PsiFile psiFile = PsiManager.getInstance(project).findFile(stringsXmlFile);
-        if (psiFile instanceof XmlFile) {
-            XmlFile xmlFile = (XmlFile) psiFile;
-            XmlTag rootTag = xmlFile.getRootTag();
-            if (rootTag != null && "resources".equals(rootTag.getName())) {
-                String locale = getLocaleFromValuesDir(stringsXmlFile.getParent().getName());
-                if (locale != null) { // Only add valid locales
-                    locales.add(locale);
-
-                    for (XmlTag stringTag : rootTag.findSubTags("string")) {
-                        String name = stringTag.getAttributeValue("name");
-                        String value = StringUtil.unescapeXmlEntities(stringTag.getValue().getText());
-                        if (name != null && value != null) {
-                            allStrings.computeIfAbsent(name, k -> new HashMap<>()).put(locale, value);
-                        }
-                    }
+    public static StringResourceParser getInstance(@NotNull Project project) {
+        return project.getService(StringResourceParser.class);
+    }
+
+    /**
+     * Finds and parses every string resource file of {@code resDir} under a cancellable modal progress.
+     * Must be called on the EDT. Returns null if the user cancelled.
+     */
+    @Nullable
+    public StringTable parseWithProgress(@NotNull VirtualFile resDir, @NotNull Options options) {
+        try {
+            return ProgressManager.getInstance().runProcessWithProgressSynchronously(
+                    () -> parseAll(scanner.findStringResourceFiles(resDir), options), "Parsing String Resources", true, project);
+        } catch (ProcessCanceledException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the given resource files on the current (background) thread, one after another
+     * or in parallel depending on {@code options}.
+     */
+    @NotNull
+    public StringTable parseAll(@NotNull Collection<VirtualFile> resourceFiles, @NotNull Options options) {
+        StringTable table = new StringTable(options.offHeapMemoryBudget >= 0
+                ? new OffHeapStringStore(options.offHeapMemoryBudget)
+                : null);
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        if (indicator == null) {
+            indicator = new EmptyProgressIndicator();
+        }
+        indicator.setIndeterminate(false);
+        try {
+            if (options.parallel && resourceFiles.size() > 1) {
+                parseInParallel(resourceFiles, table, indicator);
+            } else {
+                int done = 0;
+                for (VirtualFile resourceFile : resourceFiles) {
+                    indicator.checkCanceled();
+                    indicator.setText2(resourceFile.getParent().getName() + "/" + resourceFile.getName());
+                    ReadAction.run(() -> parseStringsXml(resourceFile, table));
+                    indicator.setFraction((double) ++done / resourceFiles.size());
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            table.dispose(); // Cancelled or failed: nobody else will release the off-heap storage
+            throw e;
+        }
+        return table;
+    }
+
+    private void parseInParallel(Collection<VirtualFile> resourceFiles, StringTable table, ProgressIndicator indicator) {
+        // One parse unit per locale file, never more running at once than there are cores
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+                "ExportAndroidStrings Parser", Runtime.getRuntime().availableProcessors());
+        CountDownLatch remaining = new CountDownLatch(resourceFiles.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<CancellablePromise<Map<String, String>>> promises = new ArrayList<>(resourceFiles.size());
+
+        for (VirtualFile resourceFile : resourceFiles) {
+            String locale = getLocaleFromValuesDir(resourceFile.getParent().getName());
+            if (locale == null) {
+                remaining.countDown();
+                continue;
+            }
+            // A non-blocking read action is cancelled as soon as a write action starts and restarted
+            // afterwards, so it only ever sees a consistent PSI and never delays the IDE's writes.
+            // Its result is merged only once the unit has completed, so a restart leaves no partial data behind.
+            CancellablePromise<Map<String, String>> promise = ReadAction
+                    .nonBlocking(() -> readStrings(resourceFile))
+                    .expireWith(project)
+                    .wrapProgress(indicator)
+                    .submit(executor);
+            promise.onSuccess(strings -> {
+                try {
+                    table.putAll(locale, strings, resourceFile);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e); // E.g. the off-heap store could not spill or is full
+                } finally {
+                    remaining.countDown();
                 }
+            });
+            promise.onError(error -> {
+                failure.compareAndSet(null, error);
+                remaining.countDown();
+            });
+            promises.add(promise);
+        }
+
+        try {
+            while (!remaining.await(100, TimeUnit.MILLISECONDS)) {
+                indicator.checkCanceled();
+                indicator.setFraction(1.0 - (double) remaining.getCount() / resourceFiles.size());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        } finally {
+            for (CancellablePromise<Map<String, String>> promise : promises) {
+                promise.cancel();
+            }
+        }
+
+        Throwable error = failure.get();
+        if (error instanceof ProcessCanceledException || error instanceof CancellationException) {
+            throw new ProcessCanceledException(error);
+        } else if (error != null) {
+            throw new IllegalStateException("Failed to parse string resources", error);
         }
     }
 
-    public void parseStringsXmlForTranslation(@NotNull VirtualFile stringsXmlFile,
-                                              @NotNull Map<String, String> localeStrings) {
-        PsiFile psiFile = PsiManager.getInstance(project).findFile(stringsXmlFile);
+    /**
+     * Parses one resource file into the table. Requires read access.
+     */
+    public void parseStringsXml(@NotNull VirtualFile resourceFile, @NotNull StringTable table) {
+        String locale = getLocaleFromValuesDir(resourceFile.getParent().getName());
+        if (locale != null) { // Only add valid locales
+            table.putAll(locale, readStrings(resourceFile), resourceFile);
+        }
+    }
+
+    // Requires read access
+    private Map<String, String> readStrings(@NotNull VirtualFile resourceFile) {
+        Map<String, String> localeStrings = new HashMap<>();
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(resourceFile);
         if (psiFile instanceof XmlFile) {
             XmlFile xmlFile = (XmlFile) psiFile;
             XmlTag rootTag = xmlFile.getRootTag();
             if (rootTag != null && "resources".equals(rootTag.getName())) {
-                for (XmlTag stringTag : rootTag.findSubTags("string")) {
-                    String name = stringTag.getAttributeValue("name");
-                    String value = StringUtil.unescapeXmlEntities(stringTag.getValue().getText());
-                    if (name != null && value != null) {
-                        localeStrings.put(name, value);
+                // Single pass over the children: strings, plurals items and string-array items,
+                // leaving out resources marked translatable="false"
+                for (XmlTag tag : rootTag.getSubTags()) {
+                    String name = tag.getAttributeValue("name");
+                    if (name == null || "false".equals(tag.getAttributeValue("translatable"))) {
+                        continue;
+                    }
+                    String tagName = tag.getName();
+                    if (StringResourceType.STRING.getTagName().equals(tagName)) {
+                        localeStrings.put(name, getText(tag));
+                    } else if (StringResourceType.PLURALS.getTagName().equals(tagName)) {
+                        for (XmlTag item : tag.findSubTags("item")) {
+                            String quantity = item.getAttributeValue("quantity");
+                            if (quantity != null) {
+                                localeStrings.put(StringResourceType.pluralsKey(name, quantity), getText(item));
+                            }
+                        }
+                    } else if (StringResourceType.STRING_ARRAY.getTagName().equals(tagName)) {
+                        XmlTag[] items = tag.findSubTags("item");
+                        for (int i = 0; i < items.length; i++) {
+                            localeStrings.put(StringResourceType.arrayItemKey(name, i), getText(items[i]));
+                        }
                     }
                 }
             }
         }
+        return localeStrings;
     }
 
+    private static String getText(XmlTag tag) {
+        return StringUtil.unescapeXmlEntities(tag.getValue().getText());
+    }
+
+    /**
+     * Returns "default" for "values", the directory name for a values directory qualified only by a language
+     * and optionally a region (e.g. "values-fr", "values-en-rUS", "values-b+es+419"), and null otherwise.
+     * Configuration-only directories such as "values-night" are not locales, and neither are directories
+     * adding configuration qualifiers to a language, such as "values-fr-night" or "values-fr-v21":
+     * they hold variants of the locale's strings, not a locale of their own to translate into.
+     */
     public String getLocaleFromValuesDir(@NotNull String dirName) {
         String trimmedDirName = dirName.trim();
         if ("values".equals(trimmedDirName)) {
             return "default"; // Default locale
         } else if (trimmedDirName.startsWith("values-")) {
             String localePart = trimmedDirName.substring("values-".length());
-            if (!localePart.isEmpty()) {
+            int dashIndex = localePart.indexOf('-');
+            String firstQualifier = dashIndex == -1 ? localePart : localePart.substring(0, dashIndex);
+            String otherQualifiers = dashIndex == -1 ? "" : localePart.substring(dashIndex);
+            if (LANGUAGE_QUALIFIER.matcher(firstQualifier).matches()
+                    && !NON_LANGUAGE_QUALIFIERS.contains(firstQualifier)
+                    && (otherQualifiers.isEmpty() || (!firstQualifier.startsWith("b+")
+                            && REGION_QUALIFIER.matcher(otherQualifiers).matches()))) {
                 return trimmedDirName; // Return the full directory name as requested
             }
         }
-        return null; // Return null for invalid or empty locale parts
+        return null; // Return null for invalid, empty or non-language qualifiers
+    }
+
+    /**
+     * Options of one parse run, passed with each call so that overlapping runs do not share settings.
+     */
+    public static final class Options {
+        public static final Options DEFAULT = new Options(true, -1);
+
+        public final boolean parallel;
+        public final long offHeapMemoryBudget;
+
+        /**
+         * @param parallel            whether to parse the locale files in parallel
+         * @param offHeapMemoryBudget bytes of direct memory to keep the parsed values in, spilling to a temp file
+         *                            beyond that, or a negative value to keep them on the heap. Tables parsed
+         *                            off-heap must be disposed after use.
+         */
+        public Options(boolean parallel, long offHeapMemoryBudget) {
+            this.parallel = parallel;
+            this.offHeapMemoryBudget = offHeapMemoryBudget;
+        }
     }
 }
@@ -0,0 +1,119 @@
+package com.geminicli.exportandroidstrings;
+
+/**
+ * StringResourceScanner 类负责在 res 目录中查找包含字符串资源的 XML 文件。
+ * 它会扫描所有 values* 目录中的每个 XML 文件（不仅仅是 strings.xml，
+ * 例如 strings_feature_x.xml、donottranslate.xml 等），
+ * 并先对文件内容做一次廉价的字节级预过滤（查找 "<string"、"<plurals"，"<string-array" 以 "<string" 开头），
+ * 只包含 dimens、colors 等其他资源的文件不会被交给 PSI 完整解析。
+ *
+ * 如何使用：
+ * 1. 实例化 StringResourceScanner 类，传入 StringResourceParser 实例（用于识别语言环境目录）。
+ * 2. 调用 findStringResourceFiles 方法获取 res 目录下所有包含字符串资源的 XML 文件。
+ *    例如：List<VirtualFile> files = scanner.findStringResourceFiles(resDir);
+ */
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class StringResourceScanner {
+
+    private static final Logger LOG = Logger.getInstance(StringResourceScanner.class);
+
+    // "<string" also covers "<string-array"
+    private static final byte[][] STRING_TAG_PREFIXES = {
+            "<string".getBytes(StandardCharsets.US_ASCII),
+            "<plurals".getBytes(StandardCharsets.US_ASCII)
+    };
+    private static final int MAX_PREFIX_LENGTH = 8;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final StringResourceParser parser;
+
+    public StringResourceScanner(@NotNull StringResourceParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Returns every XML file directly inside a values* directory of {@code resDir} that
+     * may contain string, plurals or string-array resources, sorted by directory and file name.
+     */
+    @NotNull
+    public List<VirtualFile> findStringResourceFiles(@NotNull VirtualFile resDir) {
+        List<VirtualFile> files = new ArrayList<>();
+        VirtualFile[] valuesDirs = resDir.getChildren();
+        Arrays.sort(valuesDirs, Comparator.comparing(VirtualFile::getName));
+        for (VirtualFile valuesDir : valuesDirs) {
+            if (!valuesDir.isDirectory() || parser.getLocaleFromValuesDir(valuesDir.getName()) == null) {
+                continue;
+            }
+            VirtualFile[] children = valuesDir.getChildren();
+            Arrays.sort(children, Comparator.comparing(VirtualFile::getName));
+            for (VirtualFile child : children) {
+                if (!child.isDirectory() && "xml".equalsIgnoreCase(child.getExtension()) && mayContainStrings(child)) {
+                    files.add(child);
+                }
+            }
+        }
+        return files;
+    }
+
+    private boolean mayContainStrings(VirtualFile file) {
+        try (InputStream in = file.getInputStream()) {
+            return containsStringResources(in);
+        } catch (IOException e) {
+            LOG.warn("Could not read " + file.getPath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Scans the raw bytes for a string resource start tag without decoding or parsing the XML.
+     * The last few bytes of each chunk are carried over so a tag split across reads is still found.
+     */
+    static boolean containsStringResources(@NotNull InputStream in) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE + MAX_PREFIX_LENGTH];
+        int carried = 0;
+        int read;
+        while ((read = in.read(buffer, carried, BUFFER_SIZE)) != -1) {
+            int length = carried + read;
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == '<' && matchesAnyPrefix(buffer, i, length)) {
+                    return true;
+                }
+            }
+            // Keep the tail, which may hold the beginning of a tag cut off by this read
+            carried = Math.min(MAX_PREFIX_LENGTH - 1, length);
+            System.arraycopy(buffer, length - carried, buffer, 0, carried);
+        }
+        return false;
+    }
+
+    private static boolean matchesAnyPrefix(byte[] buffer, int offset, int length) {
+        for (byte[] prefix : STRING_TAG_PREFIXES) {
+            if (offset + prefix.length > length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int j = 1; j < prefix.length; j++) {
+                if (buffer[offset + j] != prefix[j]) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
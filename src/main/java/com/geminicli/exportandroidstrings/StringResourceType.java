@@ -0,0 +1,136 @@
+package com.geminicli.exportandroidstrings;
+
+/**
+ * StringResourceType 枚举表示字符串表中一个 key 的资源类型：string、plurals 或 string-array。
+ * plurals 和 string-array 的每个 item 在字符串表中使用组合 key 表示：
+ * plurals 为 "name#quantity"（例如 "songs#one"），string-array 为 "name[index]"（例如 "planets[0]"）。
+ * Android 资源名称中不允许出现 '#' 和 '['，因此组合 key 可以无歧义地还原。
+ *
+ * 如何使用：
+ * 1. 调用 pluralsKey / arrayItemKey 方法生成组合 key。
+ *    例如：String key = StringResourceType.pluralsKey("songs", "one");
+ * 2. 调用 fromKey 方法获取 key 的资源类型，调用 getName / getQuantity / getIndex 方法拆分组合 key。
+ *    例如：StringResourceType type = StringResourceType.fromKey("planets[0]");
+ * 3. 调用 getResourceId 方法获取 key 所属资源的引用形式（"string/app_name"、"plurals/songs"、"array/planets"）。
+ * 4. 使用 KEY_ORDER 对 key 排序：按资源名称排序，同一 plurals 的数量项按 zero、one、two、few、many、other 排列，
+ *    同一 string-array 的 item 按数字下标排列（"planets[2]" 在 "planets[10]" 之前）。
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public enum StringResourceType {
+    STRING("string", "string"),
+    PLURALS("plurals", "plurals"),
+    STRING_ARRAY("string-array", "array");
+
+    private static final char QUANTITY_SEPARATOR = '#';
+    private static final char INDEX_START = '[';
+    private static final List<String> QUANTITIES = Arrays.asList("zero", "one", "two", "few", "many", "other");
+
+    /**
+     * Orders keys by resource name, then plurals items by quantity and string-array items by numeric index.
+     */
+    public static final Comparator<String> KEY_ORDER = StringResourceType::compareKeys;
+
+    private final String tagName;
+    private final String referenceType;
+
+    StringResourceType(String tagName, String referenceType) {
+        this.tagName = tagName;
+        this.referenceType = referenceType;
+    }
+
+    public String getTagName() {
+        return tagName;
+    }
+
+    /**
+     * Returns the type used to reference the resource, as in R.array.planets or @array/planets.
+     */
+    public String getReferenceType() {
+        return referenceType;
+    }
+
+    /**
+     * Returns the resource a (possibly composite) key belongs to in reference form, e.g. "plurals/songs" for "songs#one".
+     */
+    public static String getResourceId(@NotNull String key) {
+        return fromKey(key).referenceType + '/' + getName(key);
+    }
+
+    public static String pluralsKey(@NotNull String name, @NotNull String quantity) {
+        return name + QUANTITY_SEPARATOR + quantity;
+    }
+
+    public static String arrayItemKey(@NotNull String name, int index) {
+        return name + INDEX_START + index + ']';
+    }
+
+    public static StringResourceType fromKey(@NotNull String key) {
+        if (key.indexOf(QUANTITY_SEPARATOR) >= 0) {
+            return PLURALS;
+        } else if (key.indexOf(INDEX_START) >= 0 && key.endsWith("]")) {
+            return STRING_ARRAY;
+        }
+        return STRING;
+    }
+
+    /**
+     * Returns the resource name of a (possibly composite) key, e.g. "songs" for "songs#one".
+     */
+    public static String getName(@NotNull String key) {
+        switch (fromKey(key)) {
+            case PLURALS:
+                return key.substring(0, key.indexOf(QUANTITY_SEPARATOR));
+            case STRING_ARRAY:
+                return key.substring(0, key.indexOf(INDEX_START));
+            default:
+                return key;
+        }
+    }
+
+    /**
+     * Returns the quantity of a plurals key, e.g. "one" for "songs#one".
+     */
+    public static String getQuantity(@NotNull String pluralsKey) {
+        return pluralsKey.substring(pluralsKey.indexOf(QUANTITY_SEPARATOR) + 1);
+    }
+
+    /**
+     * Returns the item index of a string-array key, e.g. 0 for "planets[0]".
+     */
+    public static int getIndex(@NotNull String arrayItemKey) {
+        return Integer.parseInt(arrayItemKey.substring(arrayItemKey.indexOf(INDEX_START) + 1, arrayItemKey.length() - 1));
+    }
+
+    private static int compareKeys(String a, String b) {
+        int cmp = getName(a).compareTo(getName(b));
+        if (cmp != 0) {
+            return cmp;
+        }
+        StringResourceType typeA = fromKey(a);
+        StringResourceType typeB = fromKey(b);
+        if (typeA != typeB) {
+            return typeA.compareTo(typeB);
+        }
+        switch (typeA) {
+            case PLURALS:
+                cmp = Integer.compare(quantityRank(getQuantity(a)), quantityRank(getQuantity(b)));
+                return cmp != 0 ? cmp : getQuantity(a).compareTo(getQuantity(b));
+            case STRING_ARRAY:
+                return Integer.compare(getIndex(a), getIndex(b));
+            default:
+                return 0;
+        }
+    }
+
+    // Unknown quantities go last
+    private static int quantityRank(String quantity) {
+        int rank = QUANTITIES.indexOf(quantity);
+        return rank >= 0 ? rank : QUANTITIES.size();
+    }
+}
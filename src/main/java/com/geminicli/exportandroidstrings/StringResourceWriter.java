@@ -2,25 +2,33 @@ package com.geminicli.exportandroidstrings;
 
 /**
  * StringResourceWriter 类负责将字符串资源写入或更新到 Android 项目的 strings.xml 文件中。
- * 它能够处理现有字符串的更新和新字符串的添加。
+ * 它能够处理现有字符串的更新和新字符串的添加，包括 plurals 和 string-array 的 item（组合 key 见 StringResourceType）。
  *
  * 如何使用：
- * 1. 实例化 StringResourceWriter 类，传入当前项目对象。
+ * 1. 通过 StringResourceWriter.getInstance(project) 获取服务实例（在 plugin.xml 中注册为 projectService，首次使用时才创建）。
  * 2. 调用 updateStringsXml 方法，提供要更新的 strings.xml 文件的 VirtualFile 对象、字符串的键和值。
  *    例如：writer.updateStringsXml(stringsXmlFile, key, translatedText);
+ * 3. 写入同一文件的多个字符串时，调用接收 Map 的 updateStringsXml 方法，在一次写命令中完成。
+ *    例如：writer.updateStringsXml(stringsXmlFile, translatedStrings);
  */
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.ui.Messages; // NEW IMPORT
 import com.intellij.psi.PsiFileFactory; // NEW IMPORT
 import com.intellij.openapi.command.WriteCommandAction; // NEW IMPORT
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 public class StringResourceWriter {
 
     private final Project project;
@@ -29,41 +37,124 @@ public class StringResourceWriter {
         this.project = project;
     }
 
+    public static StringResourceWriter getInstance(@NotNull Project project) {
+        return project.getService(StringResourceWriter.class);
+    }
+
     public void updateStringsXml(@NotNull VirtualFile stringsXmlFile,
                                  @NotNull String key, @NotNull String value) {
+        updateStringsXml(stringsXmlFile, Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Writes all {@code values} (key -> text, keys may be composite plurals/string-array keys)
+     * to one file in a single write command.
+     */
+    public void updateStringsXml(@NotNull VirtualFile stringsXmlFile, @NotNull Map<String, String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
         PsiFile psiFile = PsiManager.getInstance(project).findFile(stringsXmlFile);
         if (psiFile instanceof XmlFile) {
             XmlFile xmlFile = (XmlFile) psiFile;
             XmlTag rootTag = xmlFile.getRootTag();
             if (rootTag != null && "resources".equals(rootTag.getName())) {
                 WriteCommandAction.runWriteCommandAction(project, () -> {
-                    // Check if the string already exists
-                    XmlTag existingTag = null;
-                    for (XmlTag stringTag : rootTag.findSubTags("string")) {
-                        if (key.equals(stringTag.getAttributeValue("name"))) {
-                            existingTag = stringTag;
-                            break;
+                    // Index the existing resources once instead of searching the file for every key
+                    Map<String, XmlTag> existingTags = new HashMap<>();
+                    for (XmlTag tag : rootTag.getSubTags()) {
+                        String name = tag.getAttributeValue("name");
+                        if (name != null) {
+                            existingTags.put(tag.getName() + "/" + name, tag);
                         }
                     }
 
-                    if (existingTag != null) {
-                        // Update existing string
-                        existingTag.getValue().setText(value);
-                    } else {
-                        // Add new string
-                        String tagText = "<string name=\"" + key + "\">" + value + "</string>";
-                        PsiFile dummyFile = PsiFileFactory.getInstance(project).createFileFromText("dummy.xml", tagText);
-                        if (dummyFile instanceof XmlFile) {
-                            XmlFile dummyXmlFile = (XmlFile) dummyFile;
-                            XmlTag newTag = dummyXmlFile.getRootTag();
-                            if (newTag != null) {
-                                rootTag.addSubTag(newTag, false);
-                            }
+                    for (Map.Entry<String, String> entry : values.entrySet()) {
+                        String key = entry.getKey();
+                        StringResourceType type = StringResourceType.fromKey(key);
+                        String name = StringResourceType.getName(key);
+                        String tagKey = type.getTagName() + "/" + name;
+                        XmlTag existingTag = existingTags.get(tagKey);
+
+                        XmlTag addedTag;
+                        switch (type) {
+                            case PLURALS:
+                                addedTag = updatePluralsItem(rootTag, existingTag, name, StringResourceType.getQuantity(key), entry.getValue());
+                                break;
+                            case STRING_ARRAY:
+                                addedTag = updateArrayItem(rootTag, existingTag, name, StringResourceType.getIndex(key), entry.getValue());
+                                break;
+                            default:
+                                addedTag = updateString(rootTag, existingTag, name, entry.getValue());
+                                break;
+                        }
+                        if (addedTag != null) {
+                            existingTags.put(tagKey, addedTag);
                         }
                     }
                 });
             }
         }
     }
-}
 
+    // Returns the newly added tag, or null if an existing one was updated
+    private XmlTag updateString(XmlTag rootTag, XmlTag existingTag, String name, String value) {
+        if (existingTag != null) {
+            // Update existing string
+            existingTag.getValue().setText(value);
+            return null;
+        }
+        // Add new string
+        return addSubTag(rootTag, "<string name=\"" + name + "\">" + StringUtil.escapeXmlEntities(value) + "</string>");
+    }
+
+    XmlTag updatePluralsItem(XmlTag rootTag, XmlTag pluralsTag, String name, String quantity, String value) {
+        String itemText = "<item quantity=\"" + quantity + "\">" + StringUtil.escapeXmlEntities(value) + "</item>";
+        if (pluralsTag == null) {
+            return addSubTag(rootTag, "<plurals name=\"" + name + "\">" + itemText + "</plurals>");
+        }
+        for (XmlTag item : pluralsTag.findSubTags("item")) {
+            if (quantity.equals(item.getAttributeValue("quantity"))) {
+                item.getValue().setText(value);
+                return null;
+            }
+        }
+        addSubTag(pluralsTag, itemText);
+        return null;
+    }
+
+    XmlTag updateArrayItem(XmlTag rootTag, XmlTag arrayTag, String name, int index, String value) {
+        if (arrayTag == null) {
+            arrayTag = addSubTag(rootTag, "<string-array name=\"" + name + "\"></string-array>");
+            if (arrayTag == null) {
+                return null;
+            }
+            updateArrayItem(rootTag, arrayTag, name, index, value);
+            return arrayTag;
+        }
+        XmlTag[] items = arrayTag.findSubTags("item");
+        // Items of one array may arrive in any order, so pad with empty items up to the index
+        for (int i = items.length; i < index; i++) {
+            addSubTag(arrayTag, "<item></item>");
+        }
+        if (index < items.length) {
+            items[index].getValue().setText(value);
+        } else {
+            addSubTag(arrayTag, "<item>" + StringUtil.escapeXmlEntities(value) + "</item>");
+        }
+        return null;
+    }
+
+    @Nullable
+    XmlTag addSubTag(XmlTag parent, String tagText) {
+        PsiFile dummyFile = PsiFileFactory.getInstance(project).createFileFromText("dummy.xml", tagText);
+        if (dummyFile instanceof XmlFile) {
+            XmlFile dummyXmlFile = (XmlFile) dummyFile;
+            XmlTag newTag = dummyXmlFile.getRootTag();
+            if (newTag != null) {
+                return parent.addSubTag(newTag, false);
+            }
+        }
+        return null;
+    }
+}
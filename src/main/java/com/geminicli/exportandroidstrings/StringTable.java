@@ -0,0 +1,357 @@
+package com.geminicli.exportandroidstrings;
+
+/**
+ * StringTable 类保存解析得到的字符串资源表（语言环境 × key -> 文本）。
+ * 它是线程安全的：多个语言环境文件可以并行解析并同时写入。
+ * key 和语言环境名称会被驻留（intern），同一个 key 在所有语言环境中只保留一个 String 实例。
+ * 它还记录每个 key 来自哪个资源文件，以便翻译结果写回正确的文件。
+ * 来自 strings.xml 的 key 不单独记录来源，只有来自其他文件（如 strings_feature_x.xml）的 key 才会记录。
+ * 传入 OffHeapStringStore 时，文本保存在堆外（见 OffHeapStringStore），堆上每个条目只保留 key 和一个 int 句柄，
+ * 读取时才解码；此时使用完毕后需要调用 dispose 方法释放堆外内存。
+ * 需要扫描所有文本时使用 forEachValueContaining，堆外模式下它直接在 UTF-8 字节中查找字符，只解码匹配的文本。
+ *
+ * 如何使用：
+ * 1. 由 StringResourceParser 创建并填充。
+ *    例如：StringTable table = parser.parseWithProgress(resDir, options);
+ * 2. 调用 get 方法查询某个 key 在某个语言环境中的文本。
+ *    例如：String value = table.get(key, "values-fr");
+ * 3. 调用 getKeys / getLocales 遍历所有 key 和语言环境。
+ * 4. 调用 getOrigin 方法查询某个 key 在某个语言环境中所在的文件。
+ * 5. 调用 forEachValueContaining 方法遍历包含某个 ASCII 字符的文本。
+ *    例如：table.forEachValueContaining('@', value -> ...);
+ * 6. 使用完毕后调用 dispose 方法。
+ */
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.vfs.VirtualFile;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+public class StringTable implements Disposable {
+
+    public static final String STRINGS_XML = "strings.xml";
+
+    private final ConcurrentMap<String, String> internPool = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Map<String, String>> stringsByLocale = new ConcurrentHashMap<>(); // locale -> (key -> value)
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, Map<String, VirtualFile>> filesByLocale = new ConcurrentHashMap<>(); // locale -> (file name -> file)
+    private final ConcurrentMap<String, Map<String, VirtualFile>> originsByLocale = new ConcurrentHashMap<>(); // locale -> (key -> file), strings.xml keys omitted
+    @Nullable
+    private final OffHeapStringStore offHeapStore;
+    // putAll holds the read lock, so parse units still add strings concurrently; dispose takes the write lock,
+    // so a parse unit finishing late either completes before the store is closed or sees the table disposed
+    private final ReadWriteLock disposeLock = new ReentrantReadWriteLock();
+    private boolean disposed;
+
+    public StringTable() {
+        this(null);
+    }
+
+    /**
+     * @param offHeapStore where to keep the values, or null to keep them on the heap
+     */
+    public StringTable(@Nullable OffHeapStringStore offHeapStore) {
+        this.offHeapStore = offHeapStore;
+    }
+
+    /**
+     * Adds all strings parsed from {@code origin}, a resource file of {@code locale}.
+     */
+    public void putAll(@NotNull String locale, @NotNull Map<String, String> strings, @NotNull VirtualFile origin) {
+        disposeLock.readLock().lock();
+        try {
+            if (!disposed) { // Otherwise a parse unit that finished after the run was cancelled
+                doPutAll(locale, strings, origin);
+            }
+        } finally {
+            disposeLock.readLock().unlock();
+        }
+    }
+
+    private void doPutAll(String locale, Map<String, String> strings, VirtualFile origin) {
+        String internedLocale = intern(locale);
+        filesByLocale.computeIfAbsent(internedLocale, k -> new ConcurrentHashMap<>()).put(origin.getName(), origin);
+        Map<String, VirtualFile> origins = STRINGS_XML.equals(origin.getName())
+                ? null
+                : originsByLocale.computeIfAbsent(internedLocale, k -> new ConcurrentHashMap<>());
+
+        Map<String, String> localeStrings = stringsByLocale.computeIfAbsent(internedLocale,
+                k -> offHeapStore != null ? new OffHeapStringMap(offHeapStore) : new ConcurrentHashMap<>());
+        for (Map.Entry<String, String> entry : strings.entrySet()) {
+            String internedKey = intern(entry.getKey());
+            localeStrings.put(internedKey, entry.getValue());
+            keys.add(internedKey);
+            if (origins != null) {
+                origins.put(internedKey, origin);
+            }
+        }
+    }
+
+    @Nullable
+    public String get(@NotNull String key, @NotNull String locale) {
+        Map<String, String> localeStrings = stringsByLocale.get(locale);
+        return localeStrings != null ? localeStrings.get(key) : null;
+    }
+
+    @NotNull
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    @NotNull
+    public Set<String> getLocales() {
+        return Collections.unmodifiableSet(stringsByLocale.keySet());
+    }
+
+    /**
+     * Returns the strings of one locale (key -> value), or an empty map if the locale is unknown.
+     */
+    @NotNull
+    public Map<String, String> getStrings(@NotNull String locale) {
+        Map<String, String> localeStrings = stringsByLocale.get(locale);
+        return localeStrings != null ? Collections.unmodifiableMap(localeStrings) : Collections.emptyMap();
+    }
+
+    /**
+     * Returns true if the values are kept in an off-heap store, where callers should avoid decoding all of them.
+     */
+    public boolean isOffHeap() {
+        return offHeapStore != null;
+    }
+
+    /**
+     * Passes every value of every locale containing the ASCII character {@code c} to {@code consumer}.
+     * Off-heap values are searched in their UTF-8 bytes and only the matching ones are decoded.
+     */
+    public void forEachValueContaining(char c, @NotNull Consumer<String> consumer) {
+        if (c > 0x7F) {
+            throw new IllegalArgumentException("Not an ASCII character: " + c);
+        }
+        for (Map<String, String> localeStrings : stringsByLocale.values()) {
+            if (localeStrings instanceof OffHeapStringMap) {
+                ((OffHeapStringMap) localeStrings).forEachValueContaining((byte) c, consumer);
+            } else {
+                for (String value : localeStrings.values()) {
+                    if (value.indexOf(c) >= 0) {
+                        consumer.accept(value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a read-only locale -> (key -> value) view of the whole table.
+     */
+    @NotNull
+    public Map<String, Map<String, String>> asLocaleMap() {
+        return Collections.unmodifiableMap(stringsByLocale);
+    }
+
+    /**
+     * Returns the file {@code key} was read from in {@code locale}, or null if the key is not defined there.
+     */
+    @Nullable
+    public VirtualFile getOrigin(@NotNull String key, @NotNull String locale) {
+        Map<String, VirtualFile> origins = originsByLocale.get(locale);
+        VirtualFile origin = origins != null ? origins.get(key) : null;
+        if (origin != null) {
+            return origin;
+        }
+        return get(key, locale) != null ? getFile(locale, STRINGS_XML) : null;
+    }
+
+    /**
+     * Returns the resource file named {@code fileName} of {@code locale}, if it was scanned.
+     */
+    @Nullable
+    public VirtualFile getFile(@NotNull String locale, @NotNull String fileName) {
+        Map<String, VirtualFile> files = filesByLocale.get(locale);
+        return files != null ? files.get(fileName) : null;
+    }
+
+    /**
+     * Returns the file new strings of {@code locale} should go to by default: its strings.xml,
+     * or else the first of its resource files by name.
+     */
+    @Nullable
+    public VirtualFile getPrimaryFile(@NotNull String locale) {
+        Map<String, VirtualFile> files = filesByLocale.get(locale);
+        if (files == null || files.isEmpty()) {
+            return null;
+        }
+        VirtualFile stringsXml = files.get(STRINGS_XML);
+        if (stringsXml != null) {
+            return stringsXml;
+        }
+        return files.get(Collections.min(files.keySet()));
+    }
+
+    private String intern(String value) {
+        String existing = internPool.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * Releases the off-heap storage, if any. Values must not be read afterwards.
+     */
+    @Override
+    public void dispose() {
+        disposeLock.writeLock().lock();
+        try {
+            disposed = true;
+            if (offHeapStore != null) {
+                offHeapStore.close();
+            }
+        } finally {
+            disposeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The strings of one locale kept as key -> handle into the off-heap store; values are decoded on access.
+     * Iteration works on a copy of the keys, so the map may be modified while it is iterated.
+     */
+    private static class OffHeapStringMap extends AbstractMap<String, String> {
+        private final OffHeapStringStore store;
+        private final Object2IntOpenHashMap<String> handles = new Object2IntOpenHashMap<>();
+
+        OffHeapStringMap(OffHeapStringStore store) {
+            this.store = store;
+            handles.defaultReturnValue(-1);
+        }
+
+        @Override
+        public String get(Object key) {
+            int handle;
+            synchronized (handles) {
+                handle = handles.getInt(key);
+            }
+            return handle != -1 ? store.get(handle) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            synchronized (handles) {
+                return handles.containsKey(key);
+            }
+        }
+
+        @Override
+        public String put(String key, String value) {
+            int handle = store.put(value);
+            int previous;
+            synchronized (handles) {
+                previous = handles.put(key, handle);
+            }
+            return previous != -1 ? store.get(previous) : null;
+        }
+
+        @Override
+        public int size() {
+            synchronized (handles) {
+                return handles.size();
+            }
+        }
+
+        void forEachValueContaining(byte b, Consumer<String> consumer) {
+            int[] valueHandles;
+            synchronized (handles) {
+                valueHandles = handles.values().toIntArray();
+            }
+            for (int handle : valueHandles) {
+                if (store.contains(handle, b)) {
+                    consumer.accept(store.get(handle));
+                }
+            }
+        }
+
+        @NotNull
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            String[] keys;
+            synchronized (handles) {
+                keys = handles.keySet().toArray(new String[0]);
+            }
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<Entry<String, String>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < keys.length;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (next >= keys.length) {
+                                throw new NoSuchElementException();
+                            }
+                            return new LazyEntry(keys[next++]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.length;
+                }
+            };
+        }
+
+        // Decodes the value only when asked, so iterating the key set stays cheap
+        private class LazyEntry implements Entry<String, String> {
+            private final String key;
+
+            LazyEntry(String key) {
+                this.key = key;
+            }
+
+            @Override
+            public String getKey() {
+                return key;
+            }
+
+            @Override
+            public String getValue() {
+                return get(key);
+            }
+
+            @Override
+            public String setValue(String value) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof Entry)) {
+                    return false;
+                }
+                Entry<?, ?> other = (Entry<?, ?>) o;
+                return key.equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+            }
+
+            @Override
+            public int hashCode() {
+                return key.hashCode() ^ Objects.hashCode(getValue());
+            }
+        }
+    }
+}
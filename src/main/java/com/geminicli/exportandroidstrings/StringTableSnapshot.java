@@ -0,0 +1,531 @@
+package com.geminicli.exportandroidstrings;
+
+/**
+ * StringTableSnapshot 类定义了字符串表（key × 语言环境）的紧凑二进制快照格式，
+ * 用于在运行结束时持久化解析结果，以便之后快速重新加载以及比较两次运行之间的差异。
+ *
+ * 文件格式（大端序）：
+ * - 文件头：魔数 "ASTS"、版本号、key 数量、语言环境数量、字符串池条目数量，以及各段的起始位置；
+ * - key 索引：按 UTF-8 字节序排序的 key 在字符串池中的编号（可二分查找）；
+ * - 语言环境索引：语言环境名称在字符串池中的编号；
+ * - 按语言环境划分的列：每个语言环境一列，每个 key 一个字符串池编号，缺失为 -1；
+ * - 字符串池：所有去重后的字符串（key、语言环境名称、文本）的偏移表和 UTF-8 字节。
+ * 读取时通过 FileChannel 内存映射整个文件，按位置直接访问，查找、比较和差异计算不会为每个条目分配对象，
+ * 只有在真正需要某个字符串时才会解码。
+ * 映射在缓冲区被回收之前不会释放，Windows 上被映射的文件无法移动或删除，
+ * 因此需要随后替换的快照文件（例如 saveInBackground 中的比较）使用 read 方法读入堆内存。
+ *
+ * 如何使用：
+ * 1. 调用 write 方法将字符串表写入快照文件。
+ *    例如：StringTableSnapshot.write(table, snapshotFile);
+ * 2. 调用 open 方法内存映射一个快照文件。
+ *    例如：StringTableSnapshot snapshot = StringTableSnapshot.open(snapshotFile);
+ *    如果之后还要移动或覆盖该文件，调用 read 方法将其读入堆内存。
+ * 3. 调用 diff 方法比较两个快照。
+ *    例如：StringTableSnapshot.Diff diff = previous.diff(current);
+ * 4. 调用 getSnapshotFile 方法获取某个模块默认的快照文件位置（位于 IDE 的 system 目录中）。
+ * 5. 在一次导出或翻译结束时调用 saveInBackground 方法，在后台线程中保存快照，并记录与上一次运行的差异。
+ *    例如：StringTableSnapshot.saveInBackground(modulePath, table);
+ *    字符串表在快照写入后由该方法释放（dispose）。保存按提交顺序逐个执行，连续两次运行不会同时移动同一个文件。
+ *    文本保存在堆外的字符串表不会写入快照（写入需要把所有文本解码到堆上），只会被释放。
+ *    新快照先写入临时文件，再原子地替换原文件，写入中途崩溃不会留下被截断的快照；
+ *    读取时会校验文件头中各段的位置，损坏的文件会以 IOException 报告。
+ */
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.NotNullLazyValue;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+public class StringTableSnapshot {
+
+    private static final Logger LOG = Logger.getInstance(StringTableSnapshot.class);
+
+    private static final int MAGIC = 0x41535453; // "ASTS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int NO_VALUE = -1;
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+
+    // Saves run one at a time, in submission order, so consecutive runs do not race on moving the previous snapshot aside
+    private static final NotNullLazyValue<ExecutorService> SAVE_EXECUTOR = NotNullLazyValue.createValue(
+            () -> AppExecutorUtil.createBoundedApplicationPoolExecutor("ExportAndroidStrings Snapshot Writer", 1));
+
+    private final ByteBuffer buffer;
+    private final int keyCount;
+    private final int localeCount;
+    private final int poolCount;
+    private final int poolOffsetsPos;
+    private final int poolBytesPos;
+    private final int keysPos;
+    private final int localesPos;
+    private final int columnsPos;
+
+    private StringTableSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a string table snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + buffer.getInt(4));
+        }
+        this.keyCount = buffer.getInt(8);
+        this.localeCount = buffer.getInt(12);
+        this.poolCount = buffer.getInt(16);
+        this.poolOffsetsPos = buffer.getInt(20);
+        this.poolBytesPos = buffer.getInt(24);
+        this.keysPos = buffer.getInt(28);
+        this.localesPos = buffer.getInt(32);
+        this.columnsPos = buffer.getInt(36);
+        // Check every section against the file size, so a truncated or corrupt file fails here and not on a later lookup
+        int capacity = buffer.capacity();
+        if (keyCount < 0 || localeCount < 0 || poolCount < 0) {
+            throw new IOException("Corrupt snapshot header");
+        }
+        checkSection(keysPos, 4L * keyCount, capacity);
+        checkSection(localesPos, 4L * localeCount, capacity);
+        checkSection(columnsPos, 4L * keyCount * localeCount, capacity);
+        checkSection(poolOffsetsPos, 4L * (poolCount + 1), capacity);
+        checkSection(poolBytesPos, buffer.getInt(poolOffsetsPos + 4 * poolCount), capacity);
+    }
+
+    private static void checkSection(int pos, long length, int capacity) throws IOException {
+        if (pos < HEADER_SIZE || length < 0 || pos + length > capacity) {
+            throw new IOException("Corrupt or truncated snapshot");
+        }
+    }
+
+    /**
+     * Memory-maps a snapshot file. The mapping stays valid after this method returns and is only
+     * released when the snapshot is garbage collected; use {@link #read} for a file that is moved afterwards.
+     */
+    @NotNull
+    public static StringTableSnapshot open(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new StringTableSnapshot(buffer);
+        }
+    }
+
+    /**
+     * Reads a snapshot file into heap memory, so the file is not kept mapped and can be moved or replaced.
+     */
+    @NotNull
+    public static StringTableSnapshot read(@NotNull Path file) throws IOException {
+        return new StringTableSnapshot(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    /**
+     * Returns the default snapshot location of a module, inside the IDE system directory.
+     */
+    @NotNull
+    public static Path getSnapshotFile(@NotNull String modulePath) {
+        String moduleName = Paths.get(modulePath).getFileName().toString();
+        String fileName = moduleName + "_" + Integer.toHexString(modulePath.hashCode()) + ".snapshot";
+        return Paths.get(PathManager.getSystemPath(), "exportAndroidStrings", fileName);
+    }
+
+    /**
+     * Saves the snapshot of a module at the end of a run on a pooled thread and logs what
+     * changed since the previous run. {@code table} must no longer be modified; it is disposed
+     * once the snapshot is written.
+     */
+    public static void saveInBackground(@NotNull String modulePath, @NotNull StringTable table) {
+        if (table.isOffHeap()) {
+            // Writing the snapshot decodes and pools every value on the heap, which off-heap mode is meant to avoid
+            table.dispose();
+            return;
+        }
+        SAVE_EXECUTOR.getValue().execute(() -> {
+            Path file = getSnapshotFile(modulePath);
+            try {
+                writeKeepingPrevious(table, file);
+                Path previousFile = getPreviousSnapshotFile(file);
+                if (Files.exists(previousFile)) {
+                    // Read rather than mapped: the next save moves these files
+                    Diff diff = read(previousFile).diff(read(file));
+                    LOG.info("String table of " + modulePath + " since the previous run: " + diff);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Could not save string table snapshot " + file, e);
+            } finally {
+                table.dispose();
+            }
+        });
+    }
+
+    /**
+     * Writes {@code table} to {@code file}. An existing snapshot is moved aside to
+     * {@code <file>.prev} so that the two most recent runs can be compared. The new snapshot is
+     * written to a temporary file first and then moved into place, so a crash never leaves a truncated file.
+     */
+    public static void writeKeepingPrevious(@NotNull StringTable table, @NotNull Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            write(table.asLocaleMap(), tempFile);
+            if (Files.exists(file)) {
+                Files.move(file, getPreviousSnapshotFile(file), StandardCopyOption.REPLACE_EXISTING);
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @NotNull
+    public static Path getPreviousSnapshotFile(@NotNull Path file) {
+        return file.resolveSibling(file.getFileName() + ".prev");
+    }
+
+    /**
+     * Writes a locale -> (key -> value) table to {@code file}.
+     */
+    public static void write(@NotNull Map<String, Map<String, String>> stringsByLocale, @NotNull Path file) throws IOException {
+        // Keys sorted by their UTF-8 bytes, the order used for lookups and merging on the mapped file
+        Set<String> keySet = new HashSet<>();
+        for (Map<String, String> localeStrings : stringsByLocale.values()) {
+            keySet.addAll(localeStrings.keySet());
+        }
+        List<byte[]> sortedKeyBytes = new ArrayList<>(keySet.size());
+        for (String key : keySet) {
+            sortedKeyBytes.add(key.getBytes(StandardCharsets.UTF_8));
+        }
+        sortedKeyBytes.sort(StringTableSnapshot::compareUnsigned);
+        List<String> keys = new ArrayList<>(sortedKeyBytes.size());
+        for (byte[] keyBytes : sortedKeyBytes) {
+            keys.add(new String(keyBytes, StandardCharsets.UTF_8));
+        }
+        List<String> locales = new ArrayList<>(stringsByLocale.keySet());
+        Collections.sort(locales);
+
+        Map<String, Integer> poolIds = new HashMap<>();
+        List<byte[]> pool = new ArrayList<>();
+        int[] keyIds = new int[keys.size()];
+        for (int k = 0; k < keys.size(); k++) {
+            keyIds[k] = addToPool(keys.get(k), poolIds, pool);
+        }
+        int[] localeIds = new int[locales.size()];
+        int[][] columns = new int[locales.size()][];
+        for (int l = 0; l < locales.size(); l++) {
+            localeIds[l] = addToPool(locales.get(l), poolIds, pool);
+            Map<String, String> localeStrings = stringsByLocale.get(locales.get(l));
+            int[] column = new int[keys.size()];
+            for (int k = 0; k < keys.size(); k++) {
+                String value = localeStrings.get(keys.get(k));
+                column[k] = value != null ? addToPool(value, poolIds, pool) : NO_VALUE;
+            }
+            columns[l] = column;
+        }
+
+        long poolBytesLength = 0;
+        for (byte[] bytes : pool) {
+            poolBytesLength += bytes.length;
+        }
+        long keysPos = HEADER_SIZE;
+        long localesPos = keysPos + 4L * keys.size();
+        long columnsPos = localesPos + 4L * locales.size();
+        long poolOffsetsPos = columnsPos + 4L * keys.size() * locales.size();
+        long poolBytesPos = poolOffsetsPos + 4L * (pool.size() + 1);
+        if (poolBytesPos + poolBytesLength > Integer.MAX_VALUE) {
+            throw new IOException("String table too large for a snapshot");
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            out.putInt(MAGIC).putInt(VERSION).putInt(keys.size()).putInt(locales.size()).putInt(pool.size())
+                    .putInt((int) poolOffsetsPos).putInt((int) poolBytesPos)
+                    .putInt((int) keysPos).putInt((int) localesPos).putInt((int) columnsPos);
+            writeInts(channel, out, keyIds);
+            writeInts(channel, out, localeIds);
+            for (int[] column : columns) {
+                writeInts(channel, out, column);
+            }
+            int[] poolOffsets = new int[pool.size() + 1];
+            for (int i = 0; i < pool.size(); i++) {
+                poolOffsets[i + 1] = poolOffsets[i] + pool.get(i).length;
+            }
+            writeInts(channel, out, poolOffsets);
+            for (byte[] bytes : pool) {
+                if (out.remaining() < bytes.length) {
+                    flush(channel, out);
+                }
+                if (bytes.length > out.remaining()) {
+                    ByteBuffer large = ByteBuffer.wrap(bytes);
+                    while (large.hasRemaining()) {
+                        channel.write(large);
+                    }
+                } else {
+                    out.put(bytes);
+                }
+            }
+            flush(channel, out);
+        }
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer out, int[] values) throws IOException {
+        for (int value : values) {
+            if (out.remaining() < 4) {
+                flush(channel, out);
+            }
+            out.putInt(value);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    private static int addToPool(String value, Map<String, Integer> poolIds, List<byte[]> pool) {
+        Integer id = poolIds.get(value);
+        if (id == null) {
+            id = pool.size();
+            poolIds.put(value, id);
+            pool.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    public int getLocaleCount() {
+        return localeCount;
+    }
+
+    @NotNull
+    public String getKey(int keyIndex) {
+        return getPoolString(buffer.getInt(keysPos + 4 * keyIndex));
+    }
+
+    @NotNull
+    public String getLocale(int localeIndex) {
+        return getPoolString(buffer.getInt(localesPos + 4 * localeIndex));
+    }
+
+    /**
+     * Returns the index of {@code key}, or a negative value if the snapshot does not contain it.
+     */
+    public int findKey(@NotNull String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = keyCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = comparePoolBytes(buffer.getInt(keysPos + 4 * mid), keyBytes);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the index of {@code locale}, or -1 if the snapshot does not contain it.
+     */
+    public int findLocale(@NotNull String locale) {
+        for (int l = 0; l < localeCount; l++) {
+            if (getLocale(l).equals(locale)) {
+                return l;
+            }
+        }
+        return -1;
+    }
+
+    public boolean hasValue(int keyIndex, int localeIndex) {
+        return getValueId(keyIndex, localeIndex) != NO_VALUE;
+    }
+
+    @Nullable
+    public String getValue(int keyIndex, int localeIndex) {
+        int valueId = getValueId(keyIndex, localeIndex);
+        return valueId != NO_VALUE ? getPoolString(valueId) : null;
+    }
+
+    private int getValueId(int keyIndex, int localeIndex) {
+        return buffer.getInt(columnsPos + 4 * (localeIndex * keyCount + keyIndex));
+    }
+
+    /**
+     * Compares this snapshot (the older one) with {@code newer}. Keys are merged in sorted order
+     * and values are compared byte by byte on the mapped files; only the names of keys that
+     * differ are decoded.
+     */
+    @NotNull
+    public Diff diff(@NotNull StringTableSnapshot newer) {
+        Diff diff = new Diff();
+        // Column of each of our locales in the newer snapshot (-1 if the locale is gone)
+        int[] localeMapping = new int[localeCount];
+        for (int l = 0; l < localeCount; l++) {
+            localeMapping[l] = newer.findLocale(getLocale(l));
+            if (localeMapping[l] < 0) {
+                diff.removedLocales.add(getLocale(l));
+            }
+        }
+        // Columns of the newer snapshot's locales that we do not have, e.g. a newly added values-xx
+        List<Integer> addedLocales = new ArrayList<>();
+        for (int l = 0; l < newer.localeCount; l++) {
+            String locale = newer.getLocale(l);
+            if (findLocale(locale) < 0) {
+                addedLocales.add(l);
+                diff.addedLocales.add(locale);
+            }
+        }
+
+        int oldIndex = 0;
+        int newIndex = 0;
+        while (oldIndex < keyCount || newIndex < newer.keyCount) {
+            int cmp;
+            if (oldIndex >= keyCount) {
+                cmp = 1;
+            } else if (newIndex >= newer.keyCount) {
+                cmp = -1;
+            } else {
+                cmp = comparePoolEntries(buffer.getInt(keysPos + 4 * oldIndex),
+                        newer, newer.buffer.getInt(newer.keysPos + 4 * newIndex));
+            }
+
+            if (cmp < 0) {
+                diff.removedKeys.add(getKey(oldIndex++));
+            } else if (cmp > 0) {
+                diff.addedKeys.add(newer.getKey(newIndex++));
+            } else {
+                boolean changed = false;
+                for (int l = 0; l < localeCount && !changed; l++) {
+                    int newLocale = localeMapping[l];
+                    int oldValueId = getValueId(oldIndex, l);
+                    int newValueId = newLocale >= 0 ? newer.getValueId(newIndex, newLocale) : NO_VALUE;
+                    if (oldValueId == NO_VALUE || newValueId == NO_VALUE) {
+                        changed = oldValueId != newValueId;
+                    } else {
+                        changed = comparePoolEntries(oldValueId, newer, newValueId) != 0;
+                    }
+                }
+                // A value in a locale we did not have at all is a new translation of the key
+                for (int i = 0; i < addedLocales.size() && !changed; i++) {
+                    changed = newer.getValueId(newIndex, addedLocales.get(i)) != NO_VALUE;
+                }
+                if (changed) {
+                    diff.changedKeys.add(getKey(oldIndex));
+                }
+                oldIndex++;
+                newIndex++;
+            }
+        }
+        return diff;
+    }
+
+    private String getPoolString(int poolId) {
+        int start = poolBytesPos + buffer.getInt(poolOffsetsPos + 4 * poolId);
+        int end = poolBytesPos + buffer.getInt(poolOffsetsPos + 4 * (poolId + 1));
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int comparePoolBytes(int poolId, byte[] other) {
+        int start = poolBytesPos + buffer.getInt(poolOffsetsPos + 4 * poolId);
+        int length = poolBytesPos + buffer.getInt(poolOffsetsPos + 4 * (poolId + 1)) - start;
+        int common = Math.min(length, other.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(buffer.get(start + i) & 0xFF, other[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, other.length);
+    }
+
+    private int comparePoolEntries(int poolId, StringTableSnapshot other, int otherPoolId) {
+        int start = poolBytesPos + buffer.getInt(poolOffsetsPos + 4 * poolId);
+        int length = poolBytesPos + buffer.getInt(poolOffsetsPos + 4 * (poolId + 1)) - start;
+        int otherStart = other.poolBytesPos + other.buffer.getInt(other.poolOffsetsPos + 4 * otherPoolId);
+        int otherLength = other.poolBytesPos + other.buffer.getInt(other.poolOffsetsPos + 4 * (otherPoolId + 1)) - otherStart;
+        int common = Math.min(length, otherLength);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(buffer.get(start + i) & 0xFF, other.buffer.get(otherStart + i) & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, otherLength);
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    /**
+     * Keys added, removed, or with a different value in at least one locale between two snapshots,
+     * and the locales added or removed. Keys of an added locale are added or changed keys.
+     */
+    public static class Diff {
+        public final List<String> addedKeys = new ArrayList<>();
+        public final List<String> removedKeys = new ArrayList<>();
+        public final List<String> changedKeys = new ArrayList<>();
+        public final List<String> addedLocales = new ArrayList<>();
+        public final List<String> removedLocales = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return addedKeys.isEmpty() && removedKeys.isEmpty() && changedKeys.isEmpty()
+                    && addedLocales.isEmpty() && removedLocales.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            String summary = addedKeys.size() + " added, " + removedKeys.size() + " removed, " + changedKeys.size() + " changed";
+            if (!addedLocales.isEmpty()) {
+                summary += ", new locales " + addedLocales;
+            }
+            if (!removedLocales.isEmpty()) {
+                summary += ", removed locales " + removedLocales;
+            }
+            return summary;
+        }
+    }
+}
@@ -3,72 +3,77 @@ package com.geminicli.exportandroidstrings;
 /**
  * StringTranslator 类负责处理 Android 字符串资源的机器翻译。
  * 它使用 Google Cloud Translation API 来翻译缺失的字符串，
- * 并将翻译结果写回相应的 strings.xml 文件。
+ * 并将翻译结果写回相应的资源文件（与默认语言中定义该 key 的文件同名的文件，没有则写入 strings.xml）。
+ * donottranslate.xml 中定义的字符串不会被翻译。
+ * plurals 和 string-array 的 item 与普通字符串一样参与翻译；某个语言环境已经定义的 plurals 不会再补充数量项。
+ * 值为资源引用（以 @ 或 ? 开头，例如 @string/foo）的字符串不会被翻译；plurals 和 string-array 中的引用 item
+ * 在同一资源的其他 item 被翻译时原样复制到目标文件，以保持 item 的位置和引用关系。
  *
  * 如何使用：
- * 1. 实例化 StringTranslator 类，传入当前项目对象、StringResourceParser 实例和 StringResourceWriter 实例。
- * 2. 调用 translateMissingStrings 方法，提供模块路径和 Google Cloud Project ID。
- *    例如：translator.translateMissingStrings(modulePath, projectId);
+ * 1. 通过 StringTranslator.getInstance(project) 获取服务实例（在 plugin.xml 中注册为 projectService，首次使用时才创建），
+ *    它在使用时才获取 StringResourceParser 和 StringResourceWriter 服务来解析和写入字符串资源。
+ * 2. 调用 translateMissingStrings 方法，提供模块路径、Google Cloud Project ID、API Key 以及翻译记忆库的相似度阈值。
+ *    例如：translator.translateMissingStrings(modulePath, projectId, apiKey, 0.9, true);
+ *    发起网络请求前，会先在已有翻译中查找近似的源文本（见 TranslationMemory），
+ *    超过阈值的匹配会作为建议显示，或在 applyMemoryMatches 为 true 时直接写入。
+ *    字符串保存在堆外时（见 StringResourceParser.Options）不使用翻译记忆库，因为建立记忆库需要把所有文本解码到堆上。
+ *    如果传入 StringUsageAnalyzer，未使用的 key 不会被翻译，默认文本相同的 key 每种语言只请求一次翻译。
+ * 网络请求通过应用级的 TranslationTransport 服务发送，按目标语言分批翻译。
  * 注意：Google Cloud Translation API 认证通过 Application Default Credentials (ADC) 处理。
  */
 
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.vfs.VfsUtil;
-import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileVisitor;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import javax.swing.*;
-import java.awt.*;
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
-import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import java.util.TreeMap;
 
 public class StringTranslator {
 
+    private static final String DO_NOT_TRANSLATE_XML = "donottranslate.xml";
+
     private final Project project;
-    private final StringResourceParser parser;
-    private final StringResourceWriter writer;
-    private final OkHttpClient httpClient;
-    private final Gson gson;
-
-    public StringTranslator(@NotNull Project project,
-                            @NotNull StringResourceParser parser,
-                            @NotNull StringResourceWriter writer) {
+
+    public StringTranslator(@NotNull Project project) {
         this.project = project;
-        this.parser = parser;
-        this.writer = writer;
-        this.httpClient = new OkHttpClient();
-        this.gson = new Gson();
     }
 
-    public void translateMissingStrings(String modulePath, String projectId, String apiKey) {
+    public static StringTranslator getInstance(@NotNull Project project) {
+        return project.getService(StringTranslator.class);
+    }
+
+    public void translateMissingStrings(String modulePath, String projectId, String apiKey,
+                                        double memoryThreshold, boolean applyMemoryMatches) {
+        translateMissingStrings(modulePath, projectId, apiKey, memoryThreshold, applyMemoryMatches, null,
+                StringResourceParser.Options.DEFAULT);
+    }
+
+    public void translateMissingStrings(String modulePath, String projectId, String apiKey,
+                                        double memoryThreshold, boolean applyMemoryMatches,
+                                        @Nullable StringUsageAnalyzer usageAnalyzer,
+                                        @NotNull StringResourceParser.Options parseOptions) {
         Messages.showInfoMessage("Starting machine translation...", "Translate Strings");
 
         // Note: Authentication for Google Cloud Translation API is handled via Application Default Credentials (ADC).
         // Ensure your Google Cloud environment is configured correctly (e.g., by running 'gcloud auth application-default login').
 
+        StringTable ownedTable = null; // Disposed when the run ends without handing it to the snapshot writer
         try {
-            // Base URL for Google Cloud Translation API (v2 for simpler API key usage)
-            // For v3, the endpoint is different and requires more complex request body.
-            // We will use v2 for direct API key usage as it's simpler.
-            String baseUrl = "https://translation.googleapis.com/language/translate/v2";
+            // Open the API connection while the resource files are being parsed
+            TranslationTransport.getInstance().prewarm();
 
             VirtualFile moduleRoot = VfsUtil.findFileByIoFile(new File(modulePath), true);
             if (moduleRoot == null || !moduleRoot.isDirectory()) {
@@ -96,29 +101,14 @@ public class StringTranslator {
                 return;
             }
 
-            // Map to store all strings by locale and key
-            Map<String, Map<String, String>> allStringsByLocale = new HashMap<>(); // locale -> (key -> value)
-            Map<String, VirtualFile> stringsXmlFiles = new HashMap<>(); // locale -> strings.xml VirtualFile
-
-            // Find all strings.xml files and parse them
-            VfsUtilCore.visitChildrenRecursively(resDir, new VirtualFileVisitor<Void>() {
-                @Override
-                public boolean visitFile(@NotNull VirtualFile file) {
-                    if (file.isDirectory() && file.getName().startsWith("values")) {
-                        VirtualFile stringsXml = file.findChild("strings.xml");
-                        if (stringsXml != null && stringsXml.exists() && !stringsXml.isDirectory()) {
-                            String locale = parser.getLocaleFromValuesDir(file.getName());
-                            if (locale != null) {
-                                stringsXmlFiles.put(locale, stringsXml);
-                                Map<String, String> localeStrings = new HashMap<>();
-                                parser.parseStringsXmlForTranslation(stringsXml, localeStrings);
-                                allStringsByLocale.put(locale, localeStrings);
-                            }
-                        }
-                    }
-                    return true;
-                }
-            });
+            // Scan every XML file of the values* directories and parse the ones holding strings
+            StringTable table = StringResourceParser.getInstance(project).parseWithProgress(resDir, parseOptions);
+            if (table == null) {
+                Messages.showInfoMessage("Translation cancelled by user.", "Translate Strings");
+                return;
+            }
+            ownedTable = table;
+            Map<String, Map<String, String>> allStringsByLocale = table.asLocaleMap(); // locale -> (key -> value)
 
             Map<String, String> defaultStrings = allStringsByLocale.get("default");
             if (defaultStrings == null || defaultStrings.isEmpty()) {
@@ -126,12 +116,49 @@ public class StringTranslator {
                 return;
             }
 
+            // Unused keys are not worth paying for
+            StringUsageReport usageReport = null;
+            if (usageAnalyzer != null) {
+                usageReport = usageAnalyzer.analyzeWithProgress(moduleRoot, table);
+                if (usageReport == null) {
+                    Messages.showInfoMessage("Translation cancelled by user.", "Translate Strings");
+                    return;
+                }
+            }
+
+            // Plurals each locale already defines: a language only uses the quantities it needs,
+            // so only plurals that are missing entirely are translated, with all default quantities
+            Map<String, Set<String>> pluralsByLocale = new HashMap<>();
+            for (Map.Entry<String, Map<String, String>> localeEntry : allStringsByLocale.entrySet()) {
+                Set<String> pluralsNames = new HashSet<>();
+                for (String localeKey : localeEntry.getValue().keySet()) {
+                    if (StringResourceType.fromKey(localeKey) == StringResourceType.PLURALS) {
+                        pluralsNames.add(StringResourceType.getName(localeKey));
+                    }
+                }
+                pluralsByLocale.put(localeEntry.getKey(), pluralsNames);
+            }
+
             List<TranslationTask> translationTasks = new ArrayList<>();
+            // Plurals and string-array items that only reference another resource (e.g. @string/foo)
+            List<TranslationTask> referenceTasks = new ArrayList<>();
 
             // Iterate through each default string and find missing translations
-            for (Map.Entry<String, String> defaultEntry : defaultStrings.entrySet()) {
-                String key = defaultEntry.getKey();
-                String defaultValue = defaultEntry.getValue();
+            for (String key : defaultStrings.keySet()) {
+                VirtualFile defaultOrigin = table.getOrigin(key, "default");
+                if (defaultOrigin != null && DO_NOT_TRANSLATE_XML.equals(defaultOrigin.getName())) {
+                    continue; // Strings kept in donottranslate.xml are not meant to be translated
+                }
+                if (usageReport != null && usageReport.isUnused(key)) {
+                    continue;
+                }
+                StringResourceType type = StringResourceType.fromKey(key);
+                boolean isPlurals = type == StringResourceType.PLURALS;
+                String defaultValue = defaultStrings.get(key); // Decoded once per key, not once per locale
+                boolean isReference = isResourceReference(defaultValue);
+                if (isReference && type == StringResourceType.STRING) {
+                    continue; // An alias resolves through the referenced string, which is translated itself
+                }
 
                 for (Map.Entry<String, Map<String, String>> localeEntry : allStringsByLocale.entrySet()) {
                     String locale = localeEntry.getKey();
@@ -140,13 +167,22 @@ public class StringTranslator {
                     }
 
                     Map<String, String> targetLocaleStrings = localeEntry.getValue();
+                    if (isPlurals && pluralsByLocale.get(locale).contains(StringResourceType.getName(key))) {
+                        continue;
+                    }
                     if (!targetLocaleStrings.containsKey(key)) {
                         // String is missing in this locale, add to translation tasks
                         String targetLanguageCode = getLanguageCodeFromLocale(locale); // e.g., "values-fr" -> "fr"
                         if (targetLanguageCode == null) {
                             continue; // Skip invalid locales
                         }
-                        translationTasks.add(new TranslationTask(key, defaultValue, locale, targetLanguageCode, stringsXmlFiles.get(locale)));
+                        VirtualFile targetFile = findTargetFile(table, defaultOrigin, locale);
+                        if (targetFile == null) {
+                            continue;
+                        }
+                        TranslationTask task = new TranslationTask(key, table, locale, targetLanguageCode, targetFile,
+                                defaultValue.length());
+                        (isReference ? referenceTasks : translationTasks).add(task);
                     }
                 }
             }
@@ -156,41 +192,96 @@ public class StringTranslator {
                 return;
             }
 
+            // Look up near-duplicate sources in the existing translations before calling the API,
+            // under a progress since building the memory of a large table takes seconds.
+            // Skipped off-heap: the memory would decode every value onto the heap
+            boolean memorySearched = table.isOffHeap() || ProgressManager.getInstance().runProcessWithProgressSynchronously(() -> {
+                TranslationMemory memory = TranslationMemory.build(allStringsByLocale);
+                for (TranslationTask task : translationTasks) {
+                    ProgressManager.checkCanceled();
+                    TranslationMemory.Match match = memory.lookup(task.getDefaultValue(), task.targetLocale, memoryThreshold);
+                    if (match != null) {
+                        task.memoryTranslation = match.translation;
+                        task.memorySimilarity = match.similarity;
+                        // Punctuation-only differences can change the meaning, so they stay suggestions
+                        task.applyMemoryTranslation = applyMemoryMatches && !match.punctuationDiffers;
+                    }
+                }
+            }, "Searching Translation Memory", true, project);
+            if (!memorySearched) {
+                Messages.showInfoMessage("Translation cancelled by user.", "Translate Strings");
+                return;
+            }
+
             // Show confirmation dialog
             boolean confirmed = showTranslationConfirmationDialog(translationTasks);
 
             if (confirmed) {
-                // Perform translation for each task
+                // Group the remaining tasks by target language so they can be sent in batches
+                Map<String, List<TranslationTask>> tasksByLanguage = new LinkedHashMap<>();
+                // Results are collected per file and written with one write command per file
+                PendingWrites pendingWrites = new PendingWrites(table);
+                Set<String> includedResources = new HashSet<>();
                 for (TranslationTask task : translationTasks) {
-                    // Build the request body for translation
-                    JsonObject requestBody = new JsonObject();
-                    requestBody.addProperty("q", task.defaultValue);
-                    requestBody.addProperty("target", task.targetLanguageCode);
-                    requestBody.addProperty("format", "text"); // or html
-
-                    RequestBody body = RequestBody.create(MediaType.parse("application/json; charset=utf-8"), requestBody.toString());
-
-                    Request request = new Request.Builder()
-                            .url(baseUrl + "?key=" + apiKey) // Add API key as query parameter
-                            .post(body)
-                            .build();
-
-                    try (Response response = httpClient.newCall(request).execute()) {
-                        if (!response.isSuccessful()) {
-                            throw new IOException("Unexpected code " + response + " - " + response.body().string());
-                        }
-
-                        String responseBody = response.body().string();
-                        JsonObject jsonResponse = JsonParser.parseString(responseBody).getAsJsonObject();
-                        JsonArray translations = jsonResponse.getAsJsonObject("data").getAsJsonArray("translations");
+                    if (task.included) { // Otherwise excluded in the preview table
+                        pendingWrites.expect(task);
+                        includedResources.add(task.getTargetResource());
+                    }
+                }
+                // References are copied as they are into the plurals and arrays written to a locale,
+                // so the items keep their positions and still resolve to the referenced resource
+                List<TranslationTask> copiedReferences = new ArrayList<>();
+                for (TranslationTask task : referenceTasks) {
+                    if (includedResources.contains(task.getTargetResource())) {
+                        pendingWrites.expect(task);
+                        copiedReferences.add(task);
+                    }
+                }
 
-                        if (translations.size() > 0) {
-                            String translatedText = translations.get(0).getAsJsonObject().get("translatedText").getAsString();
-                            // Update the XML file
-                            writer.updateStringsXml(task.targetStringsXmlFile, task.key, translatedText);
+                for (TranslationTask task : copiedReferences) {
+                    pendingWrites.put(task, task.getDefaultValue());
+                }
+                for (TranslationTask task : translationTasks) {
+                    if (!task.included) {
+                        continue;
+                    }
+                    if (task.applyMemoryTranslation) {
+                        pendingWrites.put(task, task.memoryTranslation);
+                        continue;
+                    }
+                    tasksByLanguage.computeIfAbsent(task.targetLanguageCode, k -> new ArrayList<>()).add(task);
+                }
+                flushWrites(pendingWrites);
+
+                // Send one batched request stream per target language through the shared transport
+                TranslationTransport transport = TranslationTransport.getInstance();
+                for (Map.Entry<String, List<TranslationTask>> languageEntry : tasksByLanguage.entrySet()) {
+                    // Tasks sharing one text; keys with duplicate default text are only sent once when usage is analyzed
+                    List<List<TranslationTask>> tasksByText = new ArrayList<>();
+                    Map<String, List<TranslationTask>> duplicateTasks = new HashMap<>();
+                    List<String> texts = new ArrayList<>(languageEntry.getValue().size());
+                    for (TranslationTask task : languageEntry.getValue()) {
+                        String text = task.getDefaultValue();
+                        List<TranslationTask> sameText = usageReport != null ? duplicateTasks.get(text) : null;
+                        if (sameText == null) {
+                            sameText = new ArrayList<>(1);
+                            duplicateTasks.put(text, sameText);
+                            tasksByText.add(sameText);
+                            texts.add(text);
                         }
+                        sameText.add(task);
                     }
+                    transport.translate(apiKey, languageEntry.getKey(), texts, (translatedText, index) -> {
+                        for (TranslationTask task : tasksByText.get(index)) {
+                            pendingWrites.put(task, translatedText);
+                        }
+                    });
+                    // Update the XML files
+                    flushWrites(pendingWrites);
                 }
+                // Snapshot the table including the new translations
+                StringTableSnapshot.saveInBackground(modulePath, table);
+                ownedTable = null;
                 Messages.showInfoMessage("Translation process completed.", "Translate Strings");
             } else {
                 Messages.showInfoMessage("Translation cancelled by user.", "Translate Strings");
@@ -198,64 +289,105 @@ public class StringTranslator {
 
         } catch (Exception e) {
             Messages.showErrorDialog(project, "Error during translation: " + e.getMessage(), "Translation Error");
+        } finally {
+            if (ownedTable != null) {
+                ownedTable.dispose();
+            }
         }
     }
 
-    private boolean showTranslationConfirmationDialog(List<TranslationTask> tasks) {
-        StringBuilder message = new StringBuilder();
-        message.append("The following strings will be translated:\n\n");
-
-        for (TranslationTask task : tasks) {
-            message.append("Key: ").append(task.key)
-                    .append("\n  Default Value: ").append(task.defaultValue)
-                    .append("\n  Target Language: ").append(task.targetLocale)
-                    .append(" (").append(task.targetLanguageCode).append(")\n\n");
+    private void flushWrites(PendingWrites pendingWrites) {
+        StringResourceWriter writer = StringResourceWriter.getInstance(project);
+        for (Map.Entry<VirtualFile, Map<String, String>> fileEntry : pendingWrites.byFile.entrySet()) {
+            writer.updateStringsXml(fileEntry.getKey(), fileEntry.getValue());
         }
+        pendingWrites.byFile.clear();
+    }
 
-        message.append("Do you want to proceed with the translation? (Translation may incur costs)");
+    private boolean showTranslationConfirmationDialog(List<TranslationTask> tasks) {
+        // The preview table reads the tasks lazily, so it opens instantly even for very large task lists
+        return new TranslationPreviewDialog(project, tasks).showAndGet();
+    }
 
-        // Print the full message to the console for debugging
-        System.out.println("Translation Confirmation Message:\n" + message.toString());
+    // Write a missing string to the locale's file with the same name as the default file that defines it
+    // (e.g. values/strings_feature_x.xml -> values-fr/strings_feature_x.xml), or else to the locale's strings.xml
+    private VirtualFile findTargetFile(@NotNull StringTable table, VirtualFile defaultOrigin, @NotNull String locale) {
+        if (defaultOrigin != null) {
+            VirtualFile sameNameFile = table.getFile(locale, defaultOrigin.getName());
+            if (sameNameFile != null) {
+                return sameNameFile;
+            }
+        }
+        return table.getPrimaryFile(locale);
+    }
 
-        // Pass a short message to the dialog to avoid truncation issues
-        int result = Messages.showYesNoDialog(project, "Confirm translation for " + tasks.size() + " strings?", "Confirm Translation", "Proceed", "Cancel", Messages.getQuestionIcon());
-        return result == Messages.YES;
+    // Values such as "@string/foo" or "?attr/title" point to another resource and are not text to translate
+    private static boolean isResourceReference(String value) {
+        return value != null && (value.startsWith("@") || value.startsWith("?"));
     }
 
-    // Helper method to get language code from locale directory name (e.g., "values-fr" -> "fr")
+    // Helper method to get language code from locale directory name (e.g., "values-fr-rCA" -> "fr", "values-b+es+419" -> "es")
     private String getLanguageCodeFromLocale(@NotNull String dirName) {
         if (dirName.startsWith("values-")) {
             String localePart = dirName.substring("values-".length());
-            if (!localePart.isEmpty()) {
-                // Handle cases like values-b+es+419 (region code) or values-fr-rCA (country code)
-                // For simplicity, we'll just take the first part before '-' or '+'
-                int dashIndex = localePart.indexOf('-');
-                int plusIndex = localePart.indexOf('+');
-                if (dashIndex != -1) {
-                    return localePart.substring(0, dashIndex);
-                } else if (plusIndex != -1) {
-                    return localePart.substring(0, plusIndex);
-                }
-                return localePart;
+            if (localePart.startsWith("b+")) {
+                localePart = localePart.substring("b+".length());
+            }
+            int end = localePart.length();
+            int dashIndex = localePart.indexOf('-');
+            int plusIndex = localePart.indexOf('+');
+            if (dashIndex != -1) {
+                end = dashIndex;
+            }
+            if (plusIndex != -1 && plusIndex < end) {
+                end = plusIndex;
+            }
+            if (end > 0) {
+                return localePart.substring(0, end);
             }
         }
         return null; // Return null for invalid or default locale
     }
 
-    // Data class to hold translation details for confirmation
-    private static class TranslationTask {
-        String key;
-        String defaultValue;
-        String targetLocale;
-        String targetLanguageCode;
-        VirtualFile targetStringsXmlFile;
-
-        TranslationTask(String key, String defaultValue, String targetLocale, String targetLanguageCode, VirtualFile targetStringsXmlFile) {
-            this.key = key;
-            this.defaultValue = defaultValue;
-            this.targetLocale = targetLocale;
-            this.targetLanguageCode = targetLanguageCode;
-            this.targetStringsXmlFile = targetStringsXmlFile;
+    /**
+     * Values waiting to be written, per file. Items of a plurals or string-array are held back until every
+     * expected item of the resource has a value and are then released together, in item order: Android
+     * resolves such a resource per locale as a whole, so writing part of it (for example when one language's
+     * request fails) would replace the default with a resource that has empty or missing items.
+     */
+    private static class PendingWrites {
+        private final StringTable table;
+        final Map<VirtualFile, Map<String, String>> byFile = new LinkedHashMap<>();
+        private final Map<String, Integer> expectedItems = new HashMap<>(); // target resource -> item count
+        private final Map<String, Map<String, String>> heldItems = new HashMap<>(); // target resource -> (key -> value)
+
+        PendingWrites(StringTable table) {
+            this.table = table;
+        }
+
+        void expect(TranslationTask task) {
+            if (task.isResourceItem()) {
+                expectedItems.merge(task.getTargetResource(), 1, Integer::sum);
+            }
+        }
+
+        void put(TranslationTask task, String value) {
+            if (!task.isResourceItem()) {
+                release(task, Collections.singletonMap(task.key, value));
+                return;
+            }
+            String resource = task.getTargetResource();
+            Map<String, String> held = heldItems.computeIfAbsent(resource, k -> new TreeMap<>(StringResourceType.KEY_ORDER));
+            held.put(task.key, value);
+            if (held.size() == expectedItems.get(resource)) {
+                heldItems.remove(resource);
+                release(task, held);
+            }
+        }
+
+        private void release(TranslationTask task, Map<String, String> values) {
+            byFile.computeIfAbsent(task.targetStringsXmlFile, k -> new LinkedHashMap<>()).putAll(values);
+            table.putAll(task.targetLocale, values, task.targetStringsXmlFile);
         }
     }
 }
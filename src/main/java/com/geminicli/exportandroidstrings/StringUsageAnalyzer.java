@@ -0,0 +1,290 @@
+package com.geminicli.exportandroidstrings;
+
+/**
+ * StringUsageAnalyzer 类分析字符串资源在项目中的使用情况，找出未使用的 key 和默认文本重复的 key（见 StringUsageReport）。
+ * 它建立一个倒排索引（资源 -> 引用它的文件），识别以下引用形式：
+ * R.string.x / R.plurals.x / R.array.x（包括 getString(R.string.x) 等调用，以及 Kotlin 导入别名 AppR.string.x
+ * 和静态导入 import com.app.R.string 之后的 string.x 等任意限定形式，android.R 除外）、
+ * XML 中的 @string/x / @plurals/x / @array/x，以及 getIdentifier("x", "string", ...) 动态查找。
+ * 字符串值中的引用（例如 <string name="a">@string/b</string>）直接从解析得到的字符串表中读取。
+ * 索引的建立有两种方式：
+ * - IDE 处于智能模式时，通过 IDE 的单词索引（PsiSearchHelper.processCandidateFilesForText，在代码、字符串字面量、
+ *   注释和 XML 文本等所有上下文中查找）只读取包含资源名称的文件；
+ * - 无界面（headless）环境、索引尚未就绪（dumb 模式）或模块位于项目内容根目录之外（不被索引）时，
+ *   在有界线程池中并行扫描所有源文件。
+ * 每个文件只提取一次引用，提取结果会加入索引，供后续资源直接命中。
+ *
+ * 如何使用：
+ * 1. 通过 StringUsageAnalyzer.getInstance(project) 获取服务实例（在 plugin.xml 中注册为 projectService，首次使用时才创建）。
+ * 2. 在 EDT 上调用 analyzeWithProgress 方法，在模态进度条下分析模块的字符串表。
+ *    例如：StringUsageReport report = analyzer.analyzeWithProgress(moduleRoot, table);
+ *    如果已经在后台线程中，可直接调用 analyze 方法。
+ */
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiSearchHelper;
+import com.intellij.psi.search.UsageSearchContext;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class StringUsageAnalyzer {
+
+    private static final Logger LOG = Logger.getInstance(StringUsageAnalyzer.class);
+
+    // R.string.x, AppR.string.x, string.x (any qualifier but android.R), @string/x, getIdentifier("x", "string", ...)
+    private static final Pattern REFERENCE_PATTERN = Pattern.compile(
+            "(?<!\\bandroid\\.R\\.)(?<![\\w$])(string|plurals|array)\\.(\\w+)"
+                    + "|@(string|plurals|array)/(\\w+)"
+                    + "|getIdentifier\\(\\s*\"(\\w+)\"\\s*,\\s*\"(string|plurals|array)\"");
+
+    private static final Set<String> SOURCE_EXTENSIONS = new HashSet<>(Arrays.asList("java", "kt", "xml"));
+    private static final Set<String> SKIPPED_DIRECTORIES = new HashSet<>(Arrays.asList("build", "out", "node_modules"));
+
+    private final Project project;
+
+    public StringUsageAnalyzer(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static StringUsageAnalyzer getInstance(@NotNull Project project) {
+        return project.getService(StringUsageAnalyzer.class);
+    }
+
+    /**
+     * Analyzes the usage of the strings in {@code table} under a cancellable modal progress.
+     * Must be called on the EDT. Returns null if the user cancelled.
+     */
+    @Nullable
+    public StringUsageReport analyzeWithProgress(@NotNull VirtualFile moduleRoot, @NotNull StringTable table) {
+        try {
+            return ProgressManager.getInstance().runProcessWithProgressSynchronously(
+                    () -> analyze(moduleRoot, table), "Analyzing String Usage", true, project);
+        } catch (ProcessCanceledException e) {
+            return null;
+        }
+    }
+
+    @NotNull
+    public StringUsageReport analyze(@NotNull VirtualFile moduleRoot, @NotNull StringTable table) {
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        if (indicator == null) {
+            indicator = new EmptyProgressIndicator();
+        }
+
+        // Inverted index: referenced resource ("string/app_name") -> files referencing it
+        ConcurrentMap<String, Set<VirtualFile>> index = new ConcurrentHashMap<>();
+
+        // References between string resources, e.g. <string name="a">@string/b</string>
+        Set<String> referencedByValues = new HashSet<>();
+        table.forEachValueContaining('@', value -> extractReferences(value, referencedByValues::add));
+
+        Map<String, String> defaultStrings = table.getStrings("default");
+        Set<String> resourceIds = new TreeSet<>();
+        for (String key : defaultStrings.keySet()) {
+            resourceIds.add(StringResourceType.getResourceId(key));
+        }
+        resourceIds.removeAll(referencedByValues);
+
+        List<VirtualFile> roots = new ArrayList<>(Arrays.asList(ProjectRootManager.getInstance(project).getContentRoots()));
+        boolean moduleInProject = false;
+        for (VirtualFile root : roots) {
+            if (VfsUtilCore.isAncestor(root, moduleRoot, false)) {
+                moduleInProject = true;
+                break;
+            }
+        }
+        if (!moduleInProject) {
+            roots.add(moduleRoot);
+        }
+
+        boolean indexed = false;
+        // Files outside the content roots are not in the word index, so a module outside the project is scanned
+        if (moduleInProject && !ApplicationManager.getApplication().isHeadlessEnvironment() && !DumbService.isDumb(project)) {
+            try {
+                indexWithWordIndex(resourceIds, index, indicator);
+                indexed = true;
+            } catch (IndexNotReadyException e) {
+                LOG.info("Indexes became unavailable, falling back to a file scan");
+            }
+        }
+        if (!indexed) {
+            indexWithFileScan(roots, index, indicator);
+        }
+
+        Set<String> referencedResources = new HashSet<>(index.keySet());
+        referencedResources.addAll(referencedByValues);
+        return StringUsageReport.build(defaultStrings, referencedResources);
+    }
+
+    /**
+     * Looks each resource name up in the IDE word index and only reads the files containing it.
+     */
+    private void indexWithWordIndex(Set<String> resourceIds, ConcurrentMap<String, Set<VirtualFile>> index,
+                                    ProgressIndicator indicator) {
+        PsiSearchHelper searchHelper = PsiSearchHelper.getInstance(project);
+        PsiManager psiManager = PsiManager.getInstance(project);
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        indexCandidateFiles(resourceIds, index, indicator, new CandidateFileSearch() {
+            @Override
+            public void processFilesWithWord(@NotNull String word, @NotNull Predicate<VirtualFile> processor) {
+                // ANY: references are in code (R.string.x), in string literals (getIdentifier) and in XML text (@string/x)
+                ReadAction.run(() -> searchHelper.processCandidateFilesForText(scope, UsageSearchContext.ANY, true, word,
+                        processor::test));
+            }
+
+            @Nullable
+            @Override
+            public CharSequence getContents(@NotNull VirtualFile file) {
+                PsiFile psiFile = psiManager.findFile(file); // Called within the read action above
+                return psiFile != null ? psiFile.getViewProvider().getContents() : null;
+            }
+        });
+    }
+
+    /**
+     * Finds the files that may reference each resource through {@code search} and indexes every candidate file once.
+     */
+    static void indexCandidateFiles(@NotNull Set<String> resourceIds, @NotNull ConcurrentMap<String, Set<VirtualFile>> index,
+                                    @NotNull ProgressIndicator indicator, @NotNull CandidateFileSearch search) {
+        Set<VirtualFile> indexedFiles = new HashSet<>();
+        int done = 0;
+        for (String resourceId : resourceIds) {
+            indicator.checkCanceled();
+            indicator.setFraction((double) done++ / resourceIds.size());
+            if (index.containsKey(resourceId)) {
+                continue; // Already found in a file read for an earlier resource
+            }
+            String name = resourceId.substring(resourceId.indexOf('/') + 1);
+            search.processFilesWithWord(name, file -> {
+                if (indexedFiles.add(file)) {
+                    CharSequence contents = search.getContents(file);
+                    if (contents != null) {
+                        indexFile(file, contents, index);
+                    }
+                }
+                return !index.containsKey(resourceId);
+            });
+        }
+    }
+
+    /**
+     * Source of the files that may contain a word, e.g. the IDE word index.
+     */
+    interface CandidateFileSearch {
+        /**
+         * Passes every file that may contain {@code word} to {@code processor} until it returns false.
+         */
+        void processFilesWithWord(@NotNull String word, @NotNull Predicate<VirtualFile> processor);
+
+        @Nullable
+        CharSequence getContents(@NotNull VirtualFile file);
+    }
+
+    /**
+     * Reads every source file under {@code roots} (the project, and the module if it lies outside the project) in parallel.
+     */
+    private void indexWithFileScan(List<VirtualFile> roots, ConcurrentMap<String, Set<VirtualFile>> index,
+                                   ProgressIndicator indicator) {
+        List<VirtualFile> sourceFiles = new ArrayList<>();
+        for (VirtualFile root : roots) {
+            VfsUtilCore.iterateChildrenRecursively(root,
+                    file -> !file.isDirectory() || !(file.getName().startsWith(".") || SKIPPED_DIRECTORIES.contains(file.getName())),
+                    file -> {
+                        indicator.checkCanceled();
+                        if (!file.isDirectory() && file.getExtension() != null && SOURCE_EXTENSIONS.contains(file.getExtension())) {
+                            sourceFiles.add(file);
+                        }
+                        return true;
+                    });
+        }
+
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+                "ExportAndroidStrings Usage Scanner", Runtime.getRuntime().availableProcessors());
+        CountDownLatch remaining = new CountDownLatch(sourceFiles.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (VirtualFile file : sourceFiles) {
+            executor.execute(() -> {
+                try {
+                    if (!indicator.isCanceled()) {
+                        indexFile(file, new String(file.contentsToByteArray(), file.getCharset()), index);
+                    }
+                } catch (IOException e) {
+                    LOG.warn("Could not read " + file.getPath(), e);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    remaining.countDown();
+                }
+            });
+        }
+
+        try {
+            while (!remaining.await(100, TimeUnit.MILLISECONDS)) {
+                indicator.checkCanceled();
+                indicator.setFraction(1.0 - (double) remaining.getCount() / sourceFiles.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Failed to scan source files", failure.get());
+        }
+    }
+
+    private static void indexFile(VirtualFile file, CharSequence text, ConcurrentMap<String, Set<VirtualFile>> index) {
+        extractReferences(text, resourceId ->
+                index.computeIfAbsent(resourceId, k -> ConcurrentHashMap.newKeySet()).add(file));
+    }
+
+    /**
+     * Reports every string resource referenced in {@code text} as "type/name", e.g. "string/app_name".
+     */
+    static void extractReferences(@NotNull CharSequence text, @NotNull Consumer<String> consumer) {
+        Matcher matcher = REFERENCE_PATTERN.matcher(text);
+        while (matcher.find()) {
+            if (matcher.group(1) != null) {
+                consumer.accept(matcher.group(1) + '/' + matcher.group(2));
+            } else if (matcher.group(3) != null) {
+                consumer.accept(matcher.group(3) + '/' + matcher.group(4));
+            } else {
+                consumer.accept(matcher.group(6) + '/' + matcher.group(5));
+            }
+        }
+    }
+}
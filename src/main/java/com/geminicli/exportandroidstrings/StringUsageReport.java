@@ -0,0 +1,121 @@
+package com.geminicli.exportandroidstrings;
+
+/**
+ * StringUsageReport 类保存字符串使用情况分析（见 StringUsageAnalyzer）的结果：
+ * - 未使用的 key：源代码、布局和其他资源中都没有引用其所属资源（R.string.x、@string/x 等）的 key；
+ * - 重复的 key：默认语言中文本完全相同的普通字符串，每组按名称排序，第一个 key 作为保留的 key，其余为多余的 key。
+ * 导出和翻译可以根据该结果自动跳过未使用的 key；默认文本重复的 key 仍然是应用需要的资源，
+ * 翻译时每种语言只请求一次翻译，结果写入同组的所有 key。
+ *
+ * 如何使用：
+ * 1. 由 StringUsageAnalyzer 创建。
+ *    例如：StringUsageReport report = analyzer.analyzeWithProgress(moduleRoot, table);
+ * 2. 调用 isUnused 方法判断某个 key 是否可以跳过，调用 getCanonicalKey 方法获取重复 key 所在组的第一个 key。
+ * 3. 调用 getSummary 方法获取可以显示给用户的摘要。
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class StringUsageReport {
+
+    private static final int SUMMARY_LIMIT = 50;
+
+    private final Set<String> unusedKeys;
+    private final List<List<String>> duplicateGroups;
+    private final Map<String, String> canonicalKeys; // duplicate key -> first key of its group
+
+    private StringUsageReport(Set<String> unusedKeys, List<List<String>> duplicateGroups) {
+        this.unusedKeys = unusedKeys;
+        this.duplicateGroups = duplicateGroups;
+        this.canonicalKeys = new HashMap<>();
+        for (List<String> group : duplicateGroups) {
+            for (int i = 1; i < group.size(); i++) {
+                canonicalKeys.put(group.get(i), group.get(0));
+            }
+        }
+    }
+
+    /**
+     * Intersects the default strings (key -> value) with the set of referenced resources
+     * ("string/app_name", "plurals/songs", ...).
+     */
+    @NotNull
+    public static StringUsageReport build(@NotNull Map<String, String> defaultStrings, @NotNull Set<String> referencedResources) {
+        Set<String> unusedKeys = new TreeSet<>();
+        Map<String, List<String>> keysByText = new TreeMap<>();
+        for (Map.Entry<String, String> entry : defaultStrings.entrySet()) {
+            String key = entry.getKey();
+            if (!referencedResources.contains(StringResourceType.getResourceId(key))) {
+                unusedKeys.add(key);
+            }
+            // Plurals and array items are part of a larger resource and cannot be dropped on their own
+            if (StringResourceType.fromKey(key) == StringResourceType.STRING && !entry.getValue().isEmpty()) {
+                keysByText.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(key);
+            }
+        }
+
+        List<List<String>> duplicateGroups = new ArrayList<>();
+        for (List<String> keys : keysByText.values()) {
+            if (keys.size() > 1) {
+                Collections.sort(keys);
+                duplicateGroups.add(Collections.unmodifiableList(keys));
+            }
+        }
+        return new StringUsageReport(Collections.unmodifiableSet(unusedKeys), Collections.unmodifiableList(duplicateGroups));
+    }
+
+    public boolean isUnused(@NotNull String key) {
+        return unusedKeys.contains(key);
+    }
+
+    /**
+     * Returns the first key with the same default text as {@code key}, or {@code key} itself.
+     */
+    @NotNull
+    public String getCanonicalKey(@NotNull String key) {
+        return canonicalKeys.getOrDefault(key, key);
+    }
+
+    @NotNull
+    public Set<String> getUnusedKeys() {
+        return unusedKeys;
+    }
+
+    @NotNull
+    public List<List<String>> getDuplicateGroups() {
+        return duplicateGroups;
+    }
+
+    @NotNull
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(unusedKeys.size()).append(" unused key(s)");
+        int shown = 0;
+        for (String key : unusedKeys) {
+            if (shown++ == SUMMARY_LIMIT) {
+                summary.append("\n  ...");
+                break;
+            }
+            summary.append("\n  ").append(key);
+        }
+        summary.append("\n\n").append(duplicateGroups.size()).append(" group(s) of keys with identical default text");
+        shown = 0;
+        for (List<String> group : duplicateGroups) {
+            if (shown++ == SUMMARY_LIMIT) {
+                summary.append("\n  ...");
+                break;
+            }
+            summary.append("\n  ").append(String.join(", ", group));
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,423 @@
+package com.geminicli.exportandroidstrings;
+
+/**
+ * TranslationMemory 类是基于项目中已有翻译构建的本地模糊翻译记忆库。
+ * 它对默认语言的源文本做归一化（忽略大小写、标点、空白以及占位符写法的差异），
+ * 先做精确哈希匹配，再通过字符 n-gram 的 MinHash/LSH 索引查找近似匹配，
+ * 找到相似度超过阈值的已有翻译后，会按源文本中的顺序重新对齐占位符。
+ * 索引在构建完成后只包含排序好的原始类型数组，单次查询为亚毫秒级。
+ * 只有标点不同的匹配（例如 "Delete %1$s!" 与 "Delete %1$s?"）相似度低于 1.0，并标记为 punctuationDiffers，
+ * 调用方不应自动采用这类匹配。资源引用（以 @ 或 ? 开头的值）不会进入记忆库。
+ * 阈值不能低于 MIN_THRESHOLD，否则几乎任何候选都会被当作匹配。
+ *
+ * 如何使用：
+ * 1. 调用 build 方法，传入按语言环境分组的所有字符串（locale -> (key -> value)）。
+ *    例如：TranslationMemory memory = TranslationMemory.build(allStringsByLocale);
+ * 2. 调用 lookup 方法查询某个源文本在目标语言环境中的近似翻译。
+ *    例如：TranslationMemory.Match match = memory.lookup("Delete %1$s ?", "values-fr", 0.9);
+ * 3. 返回 null 表示没有超过阈值的匹配。
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TranslationMemory {
+
+    // Android/Java format specifiers such as %s, %d, %1$s, %2$.2f and %%
+    static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("%(\\d+\\$)?[-#+ 0,(]*\\d*(\\.\\d+)?[a-zA-Z%]");
+
+    // Lowest accepted similarity threshold; below it almost any candidate would count as a match
+    public static final double MIN_THRESHOLD = 0.5;
+
+    private static final String DEFAULT_LOCALE = "default";
+    private static final char PLACEHOLDER_TOKEN = '\u0001';
+    private static final int SHINGLE_SIZE = 3;
+    private static final int BANDS = 8;
+    private static final int ROWS_PER_BAND = 4;
+    private static final int SIGNATURE_SIZE = BANDS * ROWS_PER_BAND;
+    // Buckets of very common band hashes are only sampled so a lookup stays bounded
+    private static final int MAX_CANDIDATES_PER_BAND = 256;
+    private static final int[] SEEDS = new int[SIGNATURE_SIZE];
+
+    static {
+        int seed = 0x9E3779B9;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private final String[] sources;
+    private final int[] signatures; // SIGNATURE_SIZE ints per entry
+    private final long[][] bandIndex; // per band: sorted (bandHash << 32 | entryId)
+    private final Map<String, Integer> exactIndex;
+    private final Map<String, String[]> translationsByLocale; // locale -> translation per entry
+
+    private TranslationMemory(String[] sources, int[] signatures, long[][] bandIndex,
+                              Map<String, Integer> exactIndex, Map<String, String[]> translationsByLocale) {
+        this.sources = sources;
+        this.signatures = signatures;
+        this.bandIndex = bandIndex;
+        this.exactIndex = exactIndex;
+        this.translationsByLocale = translationsByLocale;
+    }
+
+    /**
+     * Builds the memory from every existing translation: each distinct default-locale
+     * source text becomes one entry, holding the translation of every locale that has it.
+     */
+    public static TranslationMemory build(@NotNull Map<String, Map<String, String>> allStringsByLocale) {
+        Map<String, String> defaultStrings = allStringsByLocale.getOrDefault(DEFAULT_LOCALE, new HashMap<>());
+
+        List<String> sourceList = new ArrayList<>();
+        List<String> normalizedList = new ArrayList<>();
+        Map<String, Integer> exactIndex = new HashMap<>();
+        Map<String, List<String>> translationLists = new HashMap<>();
+
+        for (Map.Entry<String, String> defaultEntry : defaultStrings.entrySet()) {
+            String source = defaultEntry.getValue();
+            if (source == null || source.isEmpty() || isResourceReference(source)) {
+                continue;
+            }
+            String normalized = normalize(source);
+            Integer id = exactIndex.get(normalized);
+            if (id == null) {
+                id = sourceList.size();
+                exactIndex.put(normalized, id);
+                sourceList.add(source);
+                normalizedList.add(normalized);
+            }
+
+            for (Map.Entry<String, Map<String, String>> localeEntry : allStringsByLocale.entrySet()) {
+                String locale = localeEntry.getKey();
+                if (DEFAULT_LOCALE.equals(locale)) {
+                    continue;
+                }
+                String translation = localeEntry.getValue().get(defaultEntry.getKey());
+                if (translation == null || translation.isEmpty() || isResourceReference(translation)) {
+                    continue;
+                }
+                List<String> translations = translationLists.computeIfAbsent(locale, k -> new ArrayList<>());
+                while (translations.size() <= id) {
+                    translations.add(null);
+                }
+                if (translations.get(id) == null
+                        && countPlaceholders(translation) == countPlaceholders(sourceList.get(id))) {
+                    translations.set(id, translation);
+                }
+            }
+        }
+
+        int entryCount = sourceList.size();
+        String[] sources = sourceList.toArray(new String[0]);
+        int[] signatures = new int[entryCount * SIGNATURE_SIZE];
+        long[][] bandIndex = new long[BANDS][entryCount];
+        int[] signature = new int[SIGNATURE_SIZE];
+        for (int id = 0; id < entryCount; id++) {
+            computeSignature(normalizedList.get(id), signature);
+            System.arraycopy(signature, 0, signatures, id * SIGNATURE_SIZE, SIGNATURE_SIZE);
+            for (int band = 0; band < BANDS; band++) {
+                bandIndex[band][id] = ((long) bandHash(signature, band) << 32) | id;
+            }
+        }
+        for (long[] band : bandIndex) {
+            Arrays.sort(band);
+        }
+
+        Map<String, String[]> translationsByLocale = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : translationLists.entrySet()) {
+            String[] translations = new String[entryCount];
+            List<String> list = entry.getValue();
+            for (int i = 0; i < list.size(); i++) {
+                translations[i] = list.get(i);
+            }
+            translationsByLocale.put(entry.getKey(), translations);
+        }
+
+        return new TranslationMemory(sources, signatures, bandIndex, exactIndex, translationsByLocale);
+    }
+
+    public int size() {
+        return sources.length;
+    }
+
+    /**
+     * Returns the most similar existing translation for {@code source} in {@code locale},
+     * with its placeholders rewritten to the ones used by {@code source}, or null when no
+     * entry reaches {@code threshold} (at least {@link #MIN_THRESHOLD}) or the placeholders cannot be realigned.
+     */
+    @Nullable
+    public Match lookup(@NotNull String source, @NotNull String locale, double threshold) {
+        String[] translations = translationsByLocale.get(locale);
+        if (translations == null || source.isEmpty() || isResourceReference(source)) {
+            return null;
+        }
+        threshold = Math.max(threshold, MIN_THRESHOLD);
+
+        String normalized = normalize(source);
+        Integer exactId = exactIndex.get(normalized);
+        if (exactId != null && translations[exactId] != null) {
+            // Same words: only punctuation, casing, whitespace or placeholder spelling differ.
+            // Punctuation can change the meaning ("Delete?" vs "Delete!"), so it lowers the score.
+            int distance = editDistance(punctuation(sources[exactId]), punctuation(source));
+            double similarity = distance == 0 ? 1.0 : 1.0 - (double) distance / (normalized.length() + distance);
+            if (similarity < threshold) {
+                return null;
+            }
+            return realign(source, exactId, translations[exactId], similarity, distance != 0);
+        }
+
+        int[] signature = new int[SIGNATURE_SIZE];
+        computeSignature(normalized, signature);
+
+        int bestId = -1;
+        int bestAgreement = -1;
+        for (int band = 0; band < BANDS; band++) {
+            long[] index = bandIndex[band];
+            long prefix = (long) bandHash(signature, band) << 32;
+            int position = lowerBound(index, prefix);
+            int end = Math.min(index.length, position + MAX_CANDIDATES_PER_BAND);
+            for (; position < end && (index[position] & 0xFFFFFFFF00000000L) == prefix; position++) {
+                int id = (int) index[position];
+                if (translations[id] == null || id == bestId) {
+                    continue;
+                }
+                int agreement = agreement(signature, id);
+                if (agreement > bestAgreement) {
+                    bestAgreement = agreement;
+                    bestId = id;
+                }
+            }
+        }
+
+        if (bestId < 0) {
+            return null;
+        }
+        double similarity = (double) bestAgreement / SIGNATURE_SIZE;
+        if (similarity < threshold) {
+            return null;
+        }
+        return realign(source, bestId, translations[bestId], similarity, false);
+    }
+
+    private Match realign(String source, int id, String translation, double similarity, boolean punctuationDiffers) {
+        String realigned = realignPlaceholders(sources[id], translation, source);
+        return realigned == null ? null : new Match(sources[id], realigned, similarity, punctuationDiffers);
+    }
+
+    private static boolean isResourceReference(String value) {
+        return value.startsWith("@") || value.startsWith("?");
+    }
+
+    // The punctuation of a text in order, without placeholders and whitespace
+    static String punctuation(@NotNull String text) {
+        String withoutPlaceholders = PLACEHOLDER_PATTERN.matcher(text).replaceAll("");
+        StringBuilder punctuation = new StringBuilder();
+        for (int i = 0; i < withoutPlaceholders.length(); i++) {
+            char c = withoutPlaceholders.charAt(i);
+            if (!Character.isLetterOrDigit(c) && !Character.isWhitespace(c)) {
+                punctuation.append(c);
+            }
+        }
+        return punctuation.toString();
+    }
+
+    // Levenshtein distance; punctuation sequences are short, so the quadratic cost does not matter
+    private static int editDistance(String a, String b) {
+        if (a.equals(b)) {
+            return 0;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private int agreement(int[] signature, int id) {
+        int base = id * SIGNATURE_SIZE;
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (signatures[base + i] == signature[i]) {
+                equal++;
+            }
+        }
+        return equal;
+    }
+
+    /**
+     * Rewrites the placeholders of {@code translation} (a translation of {@code matchedSource})
+     * so that the n-th placeholder of the matched source becomes the n-th placeholder of
+     * {@code targetSource}. Returns null when the two sources use a different number of placeholders.
+     */
+    @Nullable
+    static String realignPlaceholders(@NotNull String matchedSource, @NotNull String translation,
+                                      @NotNull String targetSource) {
+        List<String> matchedPlaceholders = findPlaceholders(matchedSource);
+        List<String> targetPlaceholders = findPlaceholders(targetSource);
+        if (matchedPlaceholders.size() != targetPlaceholders.size()) {
+            return null;
+        }
+        if (matchedPlaceholders.equals(targetPlaceholders)) {
+            return translation;
+        }
+
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(translation);
+        StringBuilder result = new StringBuilder(translation.length() + 8);
+        int last = 0;
+        int sequential = 0;
+        while (matcher.find()) {
+            String placeholder = matcher.group();
+            if ("%%".equals(placeholder)) {
+                continue; // Escaped percent sign, not an argument
+            }
+            int index = matchedPlaceholders.indexOf(placeholder);
+            if (index < 0 || matchedPlaceholders.lastIndexOf(placeholder) != index) {
+                // Non-positional placeholders like %s repeat, so map them in order of appearance
+                index = Math.min(sequential, targetPlaceholders.size() - 1);
+            }
+            sequential++;
+            result.append(translation, last, matcher.start());
+            result.append(index >= 0 ? targetPlaceholders.get(index) : placeholder);
+            last = matcher.end();
+        }
+        result.append(translation, last, translation.length());
+        return result.toString();
+    }
+
+    static List<String> findPlaceholders(@NotNull String text) {
+        List<String> placeholders = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(text);
+        while (matcher.find()) {
+            if (!"%%".equals(matcher.group())) {
+                placeholders.add(matcher.group());
+            }
+        }
+        return placeholders;
+    }
+
+    private static int countPlaceholders(String text) {
+        return findPlaceholders(text).size();
+    }
+
+    /**
+     * Lower-cases the text, replaces every placeholder with one token and collapses
+     * punctuation and whitespace runs into a single space.
+     */
+    static String normalize(@NotNull String text) {
+        String withTokens = PLACEHOLDER_PATTERN.matcher(text).replaceAll(String.valueOf(PLACEHOLDER_TOKEN));
+        StringBuilder normalized = new StringBuilder(withTokens.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < withTokens.length(); i++) {
+            char c = withTokens.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == PLACEHOLDER_TOKEN) {
+                if (pendingSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                pendingSpace = false;
+                normalized.append(Character.toLowerCase(c));
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static void computeSignature(String normalized, int[] signature) {
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int length = normalized.length();
+        if (length <= SHINGLE_SIZE) {
+            updateSignature(normalized.hashCode(), signature);
+            return;
+        }
+        for (int start = 0; start + SHINGLE_SIZE <= length; start++) {
+            int hash = 0;
+            for (int i = start; i < start + SHINGLE_SIZE; i++) {
+                hash = 31 * hash + normalized.charAt(i);
+            }
+            updateSignature(hash, signature);
+        }
+    }
+
+    private static void updateSignature(int shingleHash, int[] signature) {
+        // Derive all hash functions from two base hashes instead of mixing once per function
+        int h1 = mix(shingleHash);
+        int h2 = mix(h1 ^ 0x9E3779B9) | 1;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            int value = (h1 + i * h2) ^ SEEDS[i];
+            if (value < signature[i]) {
+                signature[i] = value;
+            }
+        }
+    }
+
+    private static int bandHash(int[] signature, int band) {
+        int hash = band;
+        int start = band * ROWS_PER_BAND;
+        for (int i = start; i < start + ROWS_PER_BAND; i++) {
+            hash = 31 * hash + signature[i];
+        }
+        return mix(hash);
+    }
+
+    // MurmurHash3 32-bit finalizer
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int lowerBound(long[] sorted, long value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A translation suggested by the memory for a source string.
+     */
+    public static class Match {
+        public final String matchedSource;
+        public final String translation;
+        public final double similarity;
+        // Same words as the matched source but different punctuation; not safe to apply without review
+        public final boolean punctuationDiffers;
+
+        Match(String matchedSource, String translation, double similarity, boolean punctuationDiffers) {
+            this.matchedSource = matchedSource;
+            this.translation = translation;
+            this.similarity = similarity;
+            this.punctuationDiffers = punctuationDiffers;
+        }
+    }
+}
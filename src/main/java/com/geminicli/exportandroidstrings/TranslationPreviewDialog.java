@@ -0,0 +1,278 @@
+package com.geminicli.exportandroidstrings;
+
+/**
+ * TranslationPreviewDialog 类在发起机器翻译之前展示所有待翻译任务的预览表格。
+ * 表格直接由任务列表提供数据（不复制、不拼接字符串），借助 JBTable 的虚拟化渲染，
+ * 即使有十万级任务也能立即打开。支持按列排序、按语言环境过滤、逐行勾选，
+ * 默认文本只在渲染可见的行时才从字符串表中读取，因此该列不参与排序（排序需要读取所有行的文本），
+ * 字符数列使用任务创建时保存的字符数排序。
+ * 并增量计算已选字符数和预估费用。翻译记忆库的近似匹配会显示在单独一列中，
+ * 直接采用记忆库结果的任务不计入费用。
+ *
+ * 如何使用：
+ * 1. 实例化 TranslationPreviewDialog 类，传入当前项目对象和任务列表。
+ * 2. 调用 showAndGet 方法显示对话框，返回 true 表示用户确认翻译。
+ *    例如：boolean confirmed = new TranslationPreviewDialog(project, tasks).showAndGet();
+ * 3. 用户取消勾选的任务其 included 字段为 false，调用方应跳过这些任务。
+ *    同一语言环境中 plurals 或 string-array 的各个条目总是一起勾选或取消。
+ */
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class TranslationPreviewDialog extends DialogWrapper {
+
+    private static final String ALL_LOCALES = "All locales";
+    // Google Cloud Translation API v2 list price (USD per million characters)
+    private static final double COST_PER_MILLION_CHARS = 20.0;
+
+    private final PreviewTableModel model;
+    private final JBTable table;
+    private final TableRowSorter<PreviewTableModel> sorter;
+    private final ComboBox<String> localeFilter;
+    private final JBLabel summaryLabel = new JBLabel();
+
+    public TranslationPreviewDialog(@NotNull Project project, @NotNull List<TranslationTask> tasks) {
+        super(project);
+        this.model = new PreviewTableModel(tasks);
+        this.table = new JBTable(model);
+        this.sorter = new TableRowSorter<>(model);
+        this.localeFilter = new ComboBox<>(buildLocaleChoices(tasks));
+
+        setTitle("Confirm Translation");
+        setOKButtonText("Proceed");
+        setCancelButtonText("Cancel");
+        init();
+    }
+
+    @Override
+    protected @Nullable JComponent createCenterPanel() {
+        // Sorting by the default text would decode every row (possibly from off-heap memory) on each comparison
+        sorter.setSortable(PreviewTableModel.COLUMN_DEFAULT_VALUE, false);
+        table.setRowSorter(sorter);
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_SUBSEQUENT_COLUMNS);
+        table.getColumnModel().getColumn(PreviewTableModel.COLUMN_INCLUDE).setMaxWidth(JBUI.scale(60));
+        table.getColumnModel().getColumn(PreviewTableModel.COLUMN_CHARS).setMaxWidth(JBUI.scale(80));
+        model.addTableModelListener(e -> updateSummary());
+
+        localeFilter.addActionListener(e -> applyLocaleFilter());
+
+        JButton includeVisibleButton = new JButton("Include Visible");
+        includeVisibleButton.addActionListener(e -> setVisibleRowsIncluded(true));
+        JButton excludeVisibleButton = new JButton("Exclude Visible");
+        excludeVisibleButton.addActionListener(e -> setVisibleRowsIncluded(false));
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        toolbar.add(new JBLabel("Locale:"));
+        toolbar.add(localeFilter);
+        toolbar.add(includeVisibleButton);
+        toolbar.add(excludeVisibleButton);
+
+        JPanel panel = new JPanel(new BorderLayout(0, JBUI.scale(5)));
+        panel.add(toolbar, BorderLayout.NORTH);
+        JBScrollPane scrollPane = new JBScrollPane(table);
+        scrollPane.setPreferredSize(JBUI.size(800, 450));
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(summaryLabel, BorderLayout.SOUTH);
+
+        updateSummary();
+        return panel;
+    }
+
+    private void applyLocaleFilter() {
+        Object selected = localeFilter.getSelectedItem();
+        if (selected == null || ALL_LOCALES.equals(selected)) {
+            sorter.setRowFilter(null);
+        } else {
+            String locale = (String) selected;
+            sorter.setRowFilter(new RowFilter<PreviewTableModel, Integer>() {
+                @Override
+                public boolean include(Entry<? extends PreviewTableModel, ? extends Integer> entry) {
+                    return locale.equals(model.getTask(entry.getIdentifier()).targetLocale);
+                }
+            });
+        }
+    }
+
+    private void setVisibleRowsIncluded(boolean included) {
+        int viewRowCount = table.getRowCount();
+        for (int viewRow = 0; viewRow < viewRowCount; viewRow++) {
+            model.setIncluded(table.convertRowIndexToModel(viewRow), included, false);
+        }
+        model.fireTableDataChanged();
+    }
+
+    private void updateSummary() {
+        double cost = model.getIncludedChars() * COST_PER_MILLION_CHARS / 1_000_000d;
+        summaryLabel.setText(String.format("Selected %,d of %,d strings, %,d billable characters, estimated cost $%.2f",
+                model.getIncludedCount(), model.getRowCount(), model.getIncludedChars(), cost));
+        setOKActionEnabled(model.getIncludedCount() > 0);
+    }
+
+    private static String[] buildLocaleChoices(List<TranslationTask> tasks) {
+        TreeSet<String> locales = new TreeSet<>();
+        for (TranslationTask task : tasks) {
+            locales.add(task.targetLocale);
+        }
+        List<String> choices = new ArrayList<>(locales.size() + 1);
+        choices.add(ALL_LOCALES);
+        choices.addAll(locales);
+        return choices.toArray(new String[0]);
+    }
+
+    /**
+     * Table model backed directly by the task list. Cell values are read from the
+     * tasks on demand, and the included totals are adjusted per toggled row instead
+     * of being recomputed over the whole list.
+     */
+    private static class PreviewTableModel extends AbstractTableModel {
+        static final int COLUMN_INCLUDE = 0;
+        static final int COLUMN_KEY = 1;
+        static final int COLUMN_LOCALE = 2;
+        static final int COLUMN_LANGUAGE = 3;
+        static final int COLUMN_DEFAULT_VALUE = 4;
+        static final int COLUMN_CHARS = 5;
+        static final int COLUMN_MEMORY = 6;
+
+        private static final String[] COLUMN_NAMES = {"Include", "Key", "Locale", "Language", "Default Value", "Chars", "Memory Match"};
+
+        private final List<TranslationTask> tasks;
+        // Rows of each plurals or string-array in a locale; Android resolves these resources as a whole
+        private final Map<String, List<Integer>> resourceRows = new HashMap<>();
+        private int includedCount;
+        private long includedChars;
+
+        PreviewTableModel(List<TranslationTask> tasks) {
+            this.tasks = tasks;
+            for (int row = 0; row < tasks.size(); row++) {
+                TranslationTask task = tasks.get(row);
+                if (task.included) {
+                    includedCount++;
+                    includedChars += task.getBillableCharCount();
+                }
+                if (task.isResourceItem()) {
+                    resourceRows.computeIfAbsent(task.getTargetResource(), k -> new ArrayList<>(2)).add(row);
+                }
+            }
+        }
+
+        TranslationTask getTask(int modelRow) {
+            return tasks.get(modelRow);
+        }
+
+        int getIncludedCount() {
+            return includedCount;
+        }
+
+        long getIncludedChars() {
+            return includedChars;
+        }
+
+        /**
+         * Includes or excludes a row together with the other items of its plurals or string-array.
+         */
+        void setIncluded(int modelRow, boolean included, boolean fireEvent) {
+            TranslationTask task = tasks.get(modelRow);
+            if (task.included == included) {
+                return;
+            }
+            List<Integer> rows = task.isResourceItem()
+                    ? resourceRows.get(task.getTargetResource()) : Collections.singletonList(modelRow);
+            for (int row : rows) {
+                TranslationTask item = tasks.get(row);
+                if (item.included != included) {
+                    item.included = included;
+                    int delta = included ? 1 : -1;
+                    includedCount += delta;
+                    includedChars += (long) delta * item.getBillableCharCount();
+                    if (fireEvent) {
+                        fireTableCellUpdated(row, COLUMN_INCLUDE);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int getRowCount() {
+            return tasks.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int columnIndex) {
+            switch (columnIndex) {
+                case COLUMN_INCLUDE:
+                    return Boolean.class;
+                case COLUMN_CHARS:
+                    return Integer.class;
+                default:
+                    return String.class;
+            }
+        }
+
+        @Override
+        public boolean isCellEditable(int rowIndex, int columnIndex) {
+            return columnIndex == COLUMN_INCLUDE;
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            TranslationTask task = tasks.get(rowIndex);
+            switch (columnIndex) {
+                case COLUMN_INCLUDE:
+                    return task.included;
+                case COLUMN_KEY:
+                    return task.key;
+                case COLUMN_LOCALE:
+                    return task.targetLocale;
+                case COLUMN_LANGUAGE:
+                    return task.targetLanguageCode;
+                case COLUMN_DEFAULT_VALUE:
+                    return task.getDefaultValue();
+                case COLUMN_CHARS:
+                    return task.getCharCount();
+                case COLUMN_MEMORY:
+                    if (task.memoryTranslation == null) {
+                        return "";
+                    }
+                    return String.format("%s (%d%%)", task.memoryTranslation, Math.round(task.memorySimilarity * 100));
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public void setValueAt(Object value, int rowIndex, int columnIndex) {
+            if (columnIndex == COLUMN_INCLUDE && value instanceof Boolean) {
+                setIncluded(rowIndex, (Boolean) value, true);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.geminicli.exportandroidstrings;
+
+/**
+ * TranslationTask 类表示一条待翻译的字符串：某个 key 在某个目标语言环境中缺失。
+ * 它由 StringTranslator 在检测缺失翻译时创建，并在翻译预览表格中展示。
+ *
+ * 如何使用：
+ * 1. 由 StringTranslator 创建，用户无需直接实例化。
+ * 2. 在预览对话框中可通过 included 字段勾选或取消勾选该任务。
+ * 3. 如果翻译记忆库中有近似匹配，memoryTranslation 保存对齐占位符后的建议翻译。
+ * 默认文本不在任务中复制一份，而是通过 getDefaultValue 方法从字符串表中读取，
+ * 因此在堆外存储模式下，待翻译任务同样不会在堆上保存文本；字符数在创建任务时计算一次并保存，
+ * 预览表格按字符数排序或统计费用时不需要再解码文本。
+ */
+
+import com.intellij.openapi.vfs.VirtualFile;
+
+class TranslationTask {
+    final String key;
+    private final StringTable table;
+    final String targetLocale;
+    final String targetLanguageCode;
+    final VirtualFile targetStringsXmlFile;
+    private final int charCount;
+
+    // Toggled from the preview table; excluded tasks are not sent to the API
+    boolean included = true;
+
+    // Near-match suggested by the translation memory, with placeholders already realigned
+    String memoryTranslation;
+    double memorySimilarity;
+    // When set, memoryTranslation is written directly instead of calling the API
+    boolean applyMemoryTranslation;
+
+    TranslationTask(String key, StringTable table, String targetLocale, String targetLanguageCode,
+                    VirtualFile targetStringsXmlFile, int charCount) {
+        this.key = key;
+        this.table = table;
+        this.targetLocale = targetLocale;
+        this.targetLanguageCode = targetLanguageCode;
+        this.targetStringsXmlFile = targetStringsXmlFile;
+        this.charCount = charCount;
+    }
+
+    String getDefaultValue() {
+        return table.get(key, "default");
+    }
+
+    int getCharCount() {
+        return charCount;
+    }
+
+    /**
+     * Returns true for items of a plurals or string-array, which are written to a locale as a whole.
+     */
+    boolean isResourceItem() {
+        return StringResourceType.fromKey(key) != StringResourceType.STRING;
+    }
+
+    /**
+     * Identifies the resource of this task in its target locale, e.g. "fr:array/planets".
+     */
+    String getTargetResource() {
+        return targetLocale + ':' + StringResourceType.getResourceId(key);
+    }
+
+    int getBillableCharCount() {
+        return applyMemoryTranslation ? 0 : getCharCount();
+    }
+}
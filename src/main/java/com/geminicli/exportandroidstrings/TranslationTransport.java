@@ -0,0 +1,204 @@
+package com.geminicli.exportandroidstrings;
+
+/**
+ * TranslationTransport 类是应用级服务，负责与 Google Cloud Translation API 通信。
+ * 整个 IDE 共享一个 OkHttpClient（同一个连接池和调度线程），启用 HTTP/2 和 keep-alive，
+ * 请求体使用 gzip 压缩，并可在真正翻译之前预先建立连接。
+ * 响应通过 Gson 的 JsonReader 增量解码，大批量响应不会在内存中再保留一份完整的字符串副本。
+ *
+ * 如何使用：
+ * 1. 通过 TranslationTransport.getInstance() 获取服务实例（在 plugin.xml 中注册为 applicationService）。
+ * 2. 可选：调用 prewarm 方法提前建立到翻译服务器的连接。
+ * 3. 调用 translate 方法批量翻译文本，每解码出一条翻译结果就回调一次。
+ *    例如：transport.translate(apiKey, "fr", texts, (translatedText, index) -> { ... });
+ */
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
+
+public final class TranslationTransport implements Disposable {
+
+    // Base URL for Google Cloud Translation API (v2 for simpler API key usage)
+    private static final String BASE_URL = "https://translation.googleapis.com/language/translate/v2";
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    // v2 accepts at most 128 text segments per request; keep each request body reasonably small as well
+    private static final int MAX_SEGMENTS_PER_REQUEST = 128;
+    private static final int MAX_CHARS_PER_REQUEST = 30_000;
+
+    private final OkHttpClient httpClient;
+
+    public TranslationTransport() {
+        this.httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .retryOnConnectionFailure(true)
+                .build();
+    }
+
+    public static TranslationTransport getInstance() {
+        return ApplicationManager.getApplication().getService(TranslationTransport.class);
+    }
+
+    /**
+     * Opens (TLS handshake, HTTP/2 negotiation) a pooled connection to the API host in the
+     * background, so the first real request does not pay for it.
+     */
+    public void prewarm() {
+        Request request = new Request.Builder()
+                .url(BASE_URL + "/languages")
+                .head()
+                .build();
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                // Warm-up is best effort; the real request reports connection problems
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                response.close();
+            }
+        });
+    }
+
+    /**
+     * Translates {@code texts} into {@code targetLanguageCode}, splitting them into as few
+     * requests as the API limits allow. {@code consumer} receives every translated text
+     * together with its index in {@code texts} as soon as it is decoded from the response.
+     */
+    public void translate(@NotNull String apiKey, @NotNull String targetLanguageCode,
+                          @NotNull List<String> texts, @NotNull ObjIntConsumer<String> consumer) throws IOException {
+        int start = 0;
+        while (start < texts.size()) {
+            int end = start;
+            int chars = 0;
+            while (end < texts.size() && end - start < MAX_SEGMENTS_PER_REQUEST
+                    && (end == start || chars + texts.get(end).length() <= MAX_CHARS_PER_REQUEST)) {
+                chars += texts.get(end).length();
+                end++;
+            }
+            translateBatch(apiKey, targetLanguageCode, texts.subList(start, end), start, consumer);
+            start = end;
+        }
+    }
+
+    private void translateBatch(String apiKey, String targetLanguageCode, List<String> batch,
+                                int indexOffset, ObjIntConsumer<String> consumer) throws IOException {
+        JsonArray q = new JsonArray(batch.size());
+        for (String text : batch) {
+            q.add(text);
+        }
+        JsonObject requestBody = new JsonObject();
+        requestBody.add("q", q);
+        requestBody.addProperty("target", targetLanguageCode);
+        requestBody.addProperty("format", "text"); // or html
+
+        Request request = new Request.Builder()
+                .url(BASE_URL + "?key=" + apiKey) // Add API key as query parameter
+                .header("Content-Encoding", "gzip")
+                .post(gzip(RequestBody.create(JSON, requestBody.toString())))
+                .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("Unexpected code " + response + " - " + (body != null ? body.string() : ""));
+            }
+
+            // Walk {"data": {"translations": [{"translatedText": ...}, ...]}} without building a tree
+            try (JsonReader reader = new JsonReader(body.charStream())) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!"data".equals(reader.nextName())) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (!"translations".equals(reader.nextName())) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        reader.beginArray();
+                        int index = 0;
+                        while (reader.hasNext()) {
+                            String translatedText = readTranslatedText(reader);
+                            if (translatedText != null && index < batch.size()) {
+                                consumer.accept(translatedText, indexOffset + index);
+                            }
+                            index++;
+                        }
+                        reader.endArray();
+                    }
+                    reader.endObject();
+                }
+                reader.endObject();
+            }
+        }
+    }
+
+    private static String readTranslatedText(JsonReader reader) throws IOException {
+        String translatedText = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("translatedText".equals(reader.nextName())) {
+                translatedText = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return translatedText;
+    }
+
+    private static RequestBody gzip(RequestBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                return -1; // Unknown until compressed
+            }
+
+            @Override
+            public void writeTo(@NotNull BufferedSink sink) throws IOException {
+                try (BufferedSink gzipSink = Okio.buffer(new GzipSink(sink))) {
+                    body.writeTo(gzipSink);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void dispose() {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+}
@@ -0,0 +1,141 @@
+package com.geminicli.exportandroidstrings;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OffHeapStringStoreTest {
+
+    @Test
+    void testPutGet() {
+        try (OffHeapStringStore store = new OffHeapStringStore(64L * 1024 * 1024)) {
+            int hello = store.put("Hello");
+            int empty = store.put("");
+            int unicode = store.put("こんにちは %1$s 🎉");
+            assertEquals("Hello", store.get(hello));
+            assertEquals("", store.get(empty));
+            assertEquals("こんにちは %1$s 🎉", store.get(unicode));
+            assertEquals(0L, store.getSpilledSize());
+        }
+    }
+
+    @Test
+    void testSpillsBeyondBudget() {
+        try (OffHeapStringStore store = new OffHeapStringStore(OffHeapStringStore.CHUNK_SIZE)) {
+            List<Integer> handles = new ArrayList<>();
+            for (int i = 0; i < 100_000; i++) {
+                handles.add(store.put("Value number " + i));
+            }
+            assertTrue(store.getSpilledSize() > 0);
+            for (int i = 0; i < handles.size(); i++) {
+                assertEquals("Value number " + i, store.get(handles.get(i)));
+            }
+        }
+    }
+
+    @Test
+    void testValueAcrossChunks() {
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 3 * OffHeapStringStore.CHUNK_SIZE) {
+            large.append("Lorem ipsum dolor sit amet. ");
+        }
+        try (OffHeapStringStore store = new OffHeapStringStore(0)) {
+            int small = store.put("before");
+            int handle = store.put(large.toString());
+            int after = store.put("after");
+            assertEquals("before", store.get(small));
+            assertEquals(large.toString(), store.get(handle));
+            assertEquals("after", store.get(after));
+        }
+    }
+
+    @Test
+    void testContains() {
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 2 * OffHeapStringStore.CHUNK_SIZE) {
+            large.append("Lorem ipsum dolor sit amet. ");
+        }
+        try (OffHeapStringStore store = new OffHeapStringStore(0)) {
+            int reference = store.put("@string/app_name");
+            int plain = store.put("Hello");
+            int unicode = store.put("こんにちは");
+            int acrossChunks = store.put(large.append('@').toString());
+            assertTrue(store.contains(reference, (byte) '@'));
+            assertFalse(store.contains(plain, (byte) '@'));
+            assertFalse(store.contains(unicode, (byte) '@'));
+            assertTrue(store.contains(acrossChunks, (byte) '@'));
+        }
+    }
+
+    @Test
+    void testClosed() {
+        OffHeapStringStore store = new OffHeapStringStore(0);
+        int handle = store.put("value");
+        store.close();
+        assertThrows(IllegalStateException.class, () -> store.get(handle));
+        assertThrows(IllegalStateException.class, () -> store.put("value"));
+    }
+
+    @Test
+    void testStringTableOffHeap() {
+        VirtualFile stringsXml = Mockito.mock(VirtualFile.class);
+        Mockito.when(stringsXml.getName()).thenReturn("strings.xml");
+        Map<String, String> strings = new HashMap<>();
+        strings.put("app_name", "My App");
+        strings.put("hello", "Hello");
+
+        StringTable table = new StringTable(new OffHeapStringStore(0));
+        table.putAll("default", strings, stringsXml);
+
+        assertEquals("My App", table.get("app_name", "default"));
+        assertNull(table.get("missing", "default"));
+        assertEquals(strings, table.getStrings("default"));
+        assertEquals(strings.keySet(), table.getStrings("default").keySet());
+        table.dispose();
+    }
+
+    @Test
+    void testStringTablePutAllAfterDispose() {
+        VirtualFile stringsXml = Mockito.mock(VirtualFile.class);
+        Mockito.when(stringsXml.getName()).thenReturn("strings.xml");
+        StringTable table = new StringTable(new OffHeapStringStore(0));
+        table.dispose();
+
+        // A parse unit finishing after the run was cancelled must not reach the closed store
+        table.putAll("values-fr", Collections.singletonMap("hello", "Bonjour"), stringsXml);
+
+        assertTrue(table.getLocales().isEmpty());
+    }
+
+    @Test
+    void testStringTableForEachValueContaining() {
+        VirtualFile stringsXml = Mockito.mock(VirtualFile.class);
+        Mockito.when(stringsXml.getName()).thenReturn("strings.xml");
+        Map<String, String> strings = new HashMap<>();
+        strings.put("app_name", "My App");
+        strings.put("title", "@string/app_name");
+        strings.put("email", "support@example.com");
+
+        for (StringTable table : Arrays.asList(new StringTable(), new StringTable(new OffHeapStringStore(0)))) {
+            table.putAll("default", strings, stringsXml);
+            List<String> values = new ArrayList<>();
+            table.forEachValueContaining('@', values::add);
+            assertEquals(new HashSet<>(Arrays.asList("@string/app_name", "support@example.com")), new HashSet<>(values));
+            table.dispose();
+        }
+    }
+}
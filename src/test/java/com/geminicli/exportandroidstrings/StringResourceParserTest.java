@@ -52,6 +52,23 @@ public class StringResourceParserTest {
         assertNull(parser.getLocaleFromValuesDir("res-fr"));
     }
 
+    @Test
+    void testGetLocaleFromValuesDir_configurationQualifiers() {
+        assertNull(parser.getLocaleFromValuesDir("values-night"));
+        assertNull(parser.getLocaleFromValuesDir("values-land"));
+        assertNull(parser.getLocaleFromValuesDir("values-v21"));
+        assertNull(parser.getLocaleFromValuesDir("values-sw600dp"));
+        assertNull(parser.getLocaleFromValuesDir("values-car"));
+    }
+
+    @Test
+    void testGetLocaleFromValuesDir_localeWithConfiguration() {
+        assertNull(parser.getLocaleFromValuesDir("values-fr-night"));
+        assertNull(parser.getLocaleFromValuesDir("values-fr-land"));
+        assertNull(parser.getLocaleFromValuesDir("values-en-rUS-v21"));
+        assertNull(parser.getLocaleFromValuesDir("values-b+es+419-night"));
+    }
+
     @Test
     void testParseStringsXmlForTranslation() {
         // This test is more complex as it requires mocking VirtualFile, PsiFile, XmlFile, XmlTag.
@@ -0,0 +1,93 @@
+package com.geminicli.exportandroidstrings;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StringResourceScannerTest {
+
+    private static boolean scan(String content) throws IOException {
+        return StringResourceScanner.containsStringResources(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static VirtualFile mockXml(String name, String content) throws IOException {
+        VirtualFile file = Mockito.mock(VirtualFile.class);
+        Mockito.when(file.getName()).thenReturn(name);
+        Mockito.when(file.getExtension()).thenReturn("xml");
+        Mockito.when(file.getInputStream()).thenAnswer(
+                invocation -> new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        return file;
+    }
+
+    private static VirtualFile mockDir(String name, VirtualFile... children) {
+        VirtualFile dir = Mockito.mock(VirtualFile.class);
+        Mockito.when(dir.getName()).thenReturn(name);
+        Mockito.when(dir.isDirectory()).thenReturn(true);
+        Mockito.when(dir.getChildren()).thenReturn(children);
+        return dir;
+    }
+
+    @Test
+    void testFindStringResourceFiles_skipsConfigurationFolders() throws IOException {
+        String strings = "<resources><string name=\"mode\">Mode</string></resources>";
+        VirtualFile defaultStrings = mockXml("strings.xml", strings);
+        VirtualFile frenchStrings = mockXml("strings.xml", strings);
+        VirtualFile resDir = mockDir("res",
+                mockDir("values-night", mockXml("strings.xml", strings)),
+                mockDir("values-fr", frenchStrings),
+                mockDir("values-fr-night", mockXml("strings.xml", strings)),
+                mockDir("values", defaultStrings));
+
+        StringResourceScanner scanner = new StringResourceScanner(new StringResourceParser(Mockito.mock(Project.class)));
+        List<VirtualFile> files = scanner.findStringResourceFiles(resDir);
+
+        assertEquals(Arrays.asList(defaultStrings, frenchStrings), files);
+    }
+
+    @Test
+    void testContainsStringResources_string() throws IOException {
+        assertTrue(scan("<resources>\n    <string name=\"app_name\">App</string>\n</resources>"));
+    }
+
+    @Test
+    void testContainsStringResources_plurals() throws IOException {
+        assertTrue(scan("<resources><plurals name=\"songs\"><item quantity=\"one\">%d song</item></plurals></resources>"));
+    }
+
+    @Test
+    void testContainsStringResources_stringArray() throws IOException {
+        assertTrue(scan("<resources><string-array name=\"planets\"><item>Mercury</item></string-array></resources>"));
+    }
+
+    @Test
+    void testContainsStringResources_dimensOnly() throws IOException {
+        assertFalse(scan("<resources><dimen name=\"margin\">16dp</dimen><color name=\"red\">#f00</color></resources>"));
+    }
+
+    @Test
+    void testContainsStringResources_stringReferenceOnly() throws IOException {
+        assertFalse(scan("<resources><style name=\"Title\"><item name=\"android:text\">@string/app_name</item></style></resources>"));
+    }
+
+    @Test
+    void testContainsStringResources_tagAcrossBufferBoundary() throws IOException {
+        StringBuilder content = new StringBuilder("<resources>");
+        while (content.length() < 8 * 1024 - 3) {
+            content.append(' ');
+        }
+        content.append("<plurals name=\"songs\"/></resources>");
+        assertTrue(scan(content.toString()));
+    }
+}
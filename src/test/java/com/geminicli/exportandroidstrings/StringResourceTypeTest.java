@@ -0,0 +1,48 @@
+package com.geminicli.exportandroidstrings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StringResourceTypeTest {
+
+    @Test
+    void testString() {
+        assertEquals(StringResourceType.STRING, StringResourceType.fromKey("app_name"));
+        assertEquals("app_name", StringResourceType.getName("app_name"));
+        assertEquals("string/app_name", StringResourceType.getResourceId("app_name"));
+    }
+
+    @Test
+    void testPluralsKeyRoundTrip() {
+        String key = StringResourceType.pluralsKey("songs", "one");
+        assertEquals("songs#one", key);
+        assertEquals(StringResourceType.PLURALS, StringResourceType.fromKey(key));
+        assertEquals("songs", StringResourceType.getName(key));
+        assertEquals("one", StringResourceType.getQuantity(key));
+        assertEquals("plurals/songs", StringResourceType.getResourceId(key));
+    }
+
+    @Test
+    void testArrayItemKeyRoundTrip() {
+        String key = StringResourceType.arrayItemKey("planets", 12);
+        assertEquals("planets[12]", key);
+        assertEquals(StringResourceType.STRING_ARRAY, StringResourceType.fromKey(key));
+        assertEquals("planets", StringResourceType.getName(key));
+        assertEquals(12, StringResourceType.getIndex(key));
+        assertEquals("array/planets", StringResourceType.getResourceId(key));
+    }
+
+    @Test
+    void testKeyOrder() {
+        List<String> keys = new ArrayList<>(Arrays.asList(
+                "songs#other", "planets[10]", "app_name", "planets[2]", "songs#one", "songs#few", "planets[0]"));
+        keys.sort(StringResourceType.KEY_ORDER);
+        assertEquals(Arrays.asList(
+                "app_name", "planets[0]", "planets[2]", "planets[10]", "songs#one", "songs#few", "songs#other"), keys);
+    }
+}
@@ -0,0 +1,106 @@
+package com.geminicli.exportandroidstrings;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.psi.xml.XmlTagValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StringResourceWriterTest {
+
+    private XmlTag rootTag;
+    private XmlTag addedTag;
+    private List<String> addedTagTexts;
+    private StringResourceWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        rootTag = Mockito.mock(XmlTag.class);
+        addedTag = mockTag(null);
+        addedTagTexts = new ArrayList<>();
+        // Records the tags instead of creating them through the PSI
+        writer = new StringResourceWriter(Mockito.mock(Project.class)) {
+            @Override
+            XmlTag addSubTag(XmlTag parent, String tagText) {
+                addedTagTexts.add(tagText);
+                return addedTag;
+            }
+        };
+    }
+
+    private static XmlTag mockTag(String quantity, XmlTag... items) {
+        XmlTag tag = Mockito.mock(XmlTag.class);
+        Mockito.when(tag.getValue()).thenReturn(Mockito.mock(XmlTagValue.class));
+        Mockito.when(tag.getAttributeValue("quantity")).thenReturn(quantity);
+        Mockito.when(tag.findSubTags("item")).thenReturn(items);
+        return tag;
+    }
+
+    @Test
+    void testUpdatePluralsItem_existingQuantity() {
+        XmlTag one = mockTag("one");
+        XmlTag other = mockTag("other");
+        XmlTag plurals = mockTag(null, one, other);
+
+        assertNull(writer.updatePluralsItem(rootTag, plurals, "songs", "other", "%d chansons"));
+
+        Mockito.verify(other.getValue()).setText("%d chansons");
+        Mockito.verify(one.getValue(), Mockito.never()).setText(Mockito.anyString());
+        assertTrue(addedTagTexts.isEmpty());
+    }
+
+    @Test
+    void testUpdatePluralsItem_newQuantity() {
+        XmlTag plurals = mockTag(null, mockTag("one"));
+
+        assertNull(writer.updatePluralsItem(rootTag, plurals, "songs", "few", "%d písně"));
+
+        assertEquals(Arrays.asList("<item quantity=\"few\">%d písně</item>"), addedTagTexts);
+    }
+
+    @Test
+    void testUpdatePluralsItem_newPlurals() {
+        assertSame(addedTag, writer.updatePluralsItem(rootTag, null, "songs", "one", "%d <song>"));
+
+        assertEquals(Arrays.asList("<plurals name=\"songs\"><item quantity=\"one\">%d &lt;song&gt;</item></plurals>"),
+                addedTagTexts);
+    }
+
+    @Test
+    void testUpdateArrayItem_existingItem() {
+        XmlTag first = mockTag(null);
+        XmlTag array = mockTag(null, first);
+
+        assertNull(writer.updateArrayItem(rootTag, array, "planets", 0, "Mercure"));
+
+        Mockito.verify(first.getValue()).setText("Mercure");
+        assertTrue(addedTagTexts.isEmpty());
+    }
+
+    @Test
+    void testUpdateArrayItem_padsUpToIndex() {
+        XmlTag array = mockTag(null, mockTag(null));
+
+        assertNull(writer.updateArrayItem(rootTag, array, "planets", 3, "Mars & Vénus"));
+
+        assertEquals(Arrays.asList("<item></item>", "<item></item>", "<item>Mars &amp; Vénus</item>"), addedTagTexts);
+    }
+
+    @Test
+    void testUpdateArrayItem_newArray() {
+        assertSame(addedTag, writer.updateArrayItem(rootTag, null, "planets", 1, "Vénus"));
+
+        assertEquals(Arrays.asList("<string-array name=\"planets\"></string-array>", "<item></item>", "<item>Vénus</item>"),
+                addedTagTexts);
+    }
+}
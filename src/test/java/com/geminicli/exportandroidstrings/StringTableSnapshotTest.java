@@ -0,0 +1,194 @@
+package com.geminicli.exportandroidstrings;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StringTableSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Map<String, Map<String, String>> table(String[]... localeKeyValues) {
+        Map<String, Map<String, String>> table = new HashMap<>();
+        for (String[] entry : localeKeyValues) {
+            table.computeIfAbsent(entry[0], k -> new HashMap<>()).put(entry[1], entry[2]);
+        }
+        return table;
+    }
+
+    private StringTableSnapshot writeAndOpen(String name, Map<String, Map<String, String>> table) throws IOException {
+        Path file = tempDir.resolve(name);
+        StringTableSnapshot.write(table, file);
+        return StringTableSnapshot.open(file);
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        StringTableSnapshot snapshot = writeAndOpen("a.snapshot", table(
+                new String[]{"values", "app_name", "My App"},
+                new String[]{"values", "hello", "Hello"},
+                new String[]{"values", "songs#one", "%d song"},
+                new String[]{"values-fr", "hello", "Bonjour"},
+                new String[]{"values-ja", "app_name", "マイアプリ"}));
+
+        assertEquals(3, snapshot.getKeyCount());
+        assertEquals(3, snapshot.getLocaleCount());
+
+        int hello = snapshot.findKey("hello");
+        int fr = snapshot.findLocale("values-fr");
+        int ja = snapshot.findLocale("values-ja");
+        assertTrue(hello >= 0);
+        assertEquals("hello", snapshot.getKey(hello));
+        assertEquals("Bonjour", snapshot.getValue(hello, fr));
+        assertEquals("Hello", snapshot.getValue(hello, snapshot.findLocale("values")));
+        assertFalse(snapshot.hasValue(hello, ja));
+        assertNull(snapshot.getValue(hello, ja));
+        assertEquals("マイアプリ", snapshot.getValue(snapshot.findKey("app_name"), ja));
+        assertEquals("%d song", snapshot.getValue(snapshot.findKey("songs#one"), snapshot.findLocale("values")));
+    }
+
+    @Test
+    void testFindKey_missing() throws IOException {
+        StringTableSnapshot snapshot = writeAndOpen("a.snapshot", table(
+                new String[]{"values", "b", "B"},
+                new String[]{"values", "d", "D"}));
+
+        assertTrue(snapshot.findKey("a") < 0);
+        assertTrue(snapshot.findKey("c") < 0);
+        assertTrue(snapshot.findKey("e") < 0);
+        assertEquals(-1, snapshot.findLocale("values-fr"));
+    }
+
+    @Test
+    void testKeysSortedForBinarySearch() throws IOException {
+        Map<String, String> defaults = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            defaults.put("key_" + i, "Value " + i);
+        }
+        StringTableSnapshot snapshot = writeAndOpen("a.snapshot", Collections.singletonMap("values", defaults));
+
+        for (int i = 0; i < 1000; i++) {
+            int index = snapshot.findKey("key_" + i);
+            assertEquals("Value " + i, snapshot.getValue(index, 0));
+        }
+    }
+
+    @Test
+    void testDiff() throws IOException {
+        StringTableSnapshot previous = writeAndOpen("previous.snapshot", table(
+                new String[]{"values", "kept", "Kept"},
+                new String[]{"values", "removed", "Removed"},
+                new String[]{"values", "reworded", "Old text"},
+                new String[]{"values-fr", "kept", "Gardé"}));
+        StringTableSnapshot current = writeAndOpen("current.snapshot", table(
+                new String[]{"values", "added", "Added"},
+                new String[]{"values", "kept", "Kept"},
+                new String[]{"values", "reworded", "New text"},
+                new String[]{"values-fr", "kept", "Gardé"},
+                new String[]{"values-fr", "reworded", "Nouveau texte"}));
+
+        StringTableSnapshot.Diff diff = previous.diff(current);
+
+        assertEquals(Collections.singletonList("added"), diff.addedKeys);
+        assertEquals(Collections.singletonList("removed"), diff.removedKeys);
+        assertEquals(Collections.singletonList("reworded"), diff.changedKeys);
+    }
+
+    @Test
+    void testDiff_translationAdded() throws IOException {
+        StringTableSnapshot previous = writeAndOpen("previous.snapshot", table(
+                new String[]{"values", "hello", "Hello"},
+                new String[]{"values-fr", "other", "Autre"}));
+        StringTableSnapshot current = writeAndOpen("current.snapshot", table(
+                new String[]{"values", "hello", "Hello"},
+                new String[]{"values-fr", "hello", "Bonjour"},
+                new String[]{"values-fr", "other", "Autre"}));
+
+        assertEquals(Arrays.asList("hello"), previous.diff(current).changedKeys);
+        assertTrue(current.diff(current).isEmpty());
+    }
+
+    @Test
+    void testDiff_localeAdded() throws IOException {
+        StringTableSnapshot previous = writeAndOpen("previous.snapshot", table(
+                new String[]{"values", "hello", "Hello"},
+                new String[]{"values", "bye", "Bye"}));
+        StringTableSnapshot current = writeAndOpen("current.snapshot", table(
+                new String[]{"values", "hello", "Hello"},
+                new String[]{"values", "bye", "Bye"},
+                new String[]{"values-de", "hello", "Hallo"},
+                new String[]{"values-de", "thanks", "Danke"}));
+
+        StringTableSnapshot.Diff diff = previous.diff(current);
+
+        assertEquals(Arrays.asList("values-de"), diff.addedLocales);
+        assertEquals(Arrays.asList("thanks"), diff.addedKeys);
+        assertEquals(Arrays.asList("hello"), diff.changedKeys);
+        assertFalse(diff.isEmpty());
+        assertEquals(Arrays.asList("values-de"), current.diff(previous).removedLocales);
+    }
+
+    @Test
+    void testRead_fileCanBeReplaced() throws IOException {
+        Path file = tempDir.resolve("a.snapshot");
+        StringTableSnapshot.write(table(new String[]{"values", "hello", "Hello"}), file);
+        StringTableSnapshot snapshot = StringTableSnapshot.read(file);
+
+        Files.move(file, tempDir.resolve("a.snapshot.prev"));
+
+        assertEquals("Hello", snapshot.getValue(snapshot.findKey("hello"), 0));
+    }
+
+    @Test
+    void testOpen_notASnapshot() throws IOException {
+        Path file = tempDir.resolve("strings.xml");
+        Files.write(file, "<resources></resources>\n<!-- padding -->".getBytes());
+        assertThrows(IOException.class, () -> StringTableSnapshot.open(file));
+    }
+
+    @Test
+    void testOpen_truncated() throws IOException {
+        Path file = tempDir.resolve("a.snapshot");
+        StringTableSnapshot.write(table(new String[]{"values", "hello", "Hello"}, new String[]{"values-fr", "hello", "Bonjour"}), file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> StringTableSnapshot.open(file));
+    }
+
+    @Test
+    void testOpen_corruptSectionOffset() throws IOException {
+        Path file = tempDir.resolve("a.snapshot");
+        StringTableSnapshot.write(table(new String[]{"values", "hello", "Hello"}), file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(36, Integer.MAX_VALUE - 2); // Columns position
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> StringTableSnapshot.read(file));
+    }
+
+    @Test
+    void testWriteKeepingPrevious() throws IOException {
+        Path file = tempDir.resolve("a.snapshot");
+        StringTableSnapshot.writeKeepingPrevious(new StringTable(), file);
+        StringTableSnapshot.writeKeepingPrevious(new StringTable(), file);
+
+        assertTrue(Files.exists(file));
+        assertTrue(Files.exists(StringTableSnapshot.getPreviousSnapshotFile(file)));
+        assertFalse(Files.exists(file.resolveSibling("a.snapshot.tmp")));
+        assertEquals(0, StringTableSnapshot.open(file).getKeyCount());
+    }
+}
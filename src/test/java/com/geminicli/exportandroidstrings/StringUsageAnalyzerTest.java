@@ -0,0 +1,158 @@
+package com.geminicli.exportandroidstrings;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StringUsageAnalyzerTest {
+
+    private static Set<String> references(String text) {
+        Set<String> references = new HashSet<>();
+        StringUsageAnalyzer.extractReferences(text, references::add);
+        return references;
+    }
+
+    @Test
+    void testExtractReferences_code() {
+        assertEquals(new HashSet<>(Arrays.asList("string/app_name", "plurals/songs", "array/planets")), references(
+                "setTitle(getString(R.string.app_name));\n"
+                        + "val text = resources.getQuantityString(R.plurals.songs, count, count)\n"
+                        + "String[] planets = getResources().getStringArray(com.example.R.array.planets);"));
+    }
+
+    @Test
+    void testExtractReferences_importAliasAndStaticImport() {
+        assertEquals(new HashSet<>(Arrays.asList("string/title", "plurals/songs", "string/subtitle", "array/planets")), references(
+                "import com.example.R as AppR\n"
+                        + "import com.example.R.string\n"
+                        + "import static com.example.R.array.*;\n"
+                        + "setTitle(getString(AppR.string.title))\n"
+                        + "val songs = resources.getQuantityString(AppR.plurals.songs, count, count)\n"
+                        + "setSubtitle(string.subtitle)\n"
+                        + "String[] planets = getResources().getStringArray(array.planets);"));
+    }
+
+    @Test
+    void testExtractReferences_xml() {
+        assertEquals(new HashSet<>(Arrays.asList("string/title", "array/entries")), references(
+                "<TextView android:text=\"@string/title\" />\n"
+                        + "<ListPreference android:entries=\"@array/entries\" />"));
+    }
+
+    @Test
+    void testExtractReferences_getIdentifier() {
+        assertEquals(new HashSet<>(Arrays.asList("string/dynamic_title")), references(
+                "int id = res.getIdentifier(\"dynamic_title\", \"string\", getPackageName());"));
+    }
+
+    @Test
+    void testExtractReferences_ignoresFrameworkAndOtherResources() {
+        assertTrue(references(
+                "getString(android.R.string.ok); R.drawable.icon; @android:string/cancel; @color/primary; "
+                        + "strings.xml; mystring.foo"
+        ).isEmpty());
+    }
+
+    @Test
+    void testReport_unusedKeys() {
+        Map<String, String> defaultStrings = new HashMap<>();
+        defaultStrings.put("used", "Used");
+        defaultStrings.put("unused", "Unused");
+        defaultStrings.put("songs#one", "%d song");
+        defaultStrings.put("songs#other", "%d songs");
+        defaultStrings.put("planets[0]", "Mercury");
+
+        StringUsageReport report = StringUsageReport.build(defaultStrings,
+                new HashSet<>(Arrays.asList("string/used", "plurals/songs")));
+
+        assertEquals(new HashSet<>(Arrays.asList("unused", "planets[0]")), report.getUnusedKeys());
+        assertFalse(report.isUnused("songs#one"));
+        assertTrue(report.isUnused("unused"));
+    }
+
+    @Test
+    void testReport_duplicateKeys() {
+        Map<String, String> defaultStrings = new HashMap<>();
+        defaultStrings.put("ok_button", "OK");
+        defaultStrings.put("confirm", "OK");
+        defaultStrings.put("dialog_ok", "OK");
+        defaultStrings.put("cancel", "Cancel");
+        defaultStrings.put("empty_a", "");
+        defaultStrings.put("empty_b", "");
+
+        Set<String> referenced = new HashSet<>();
+        for (String key : defaultStrings.keySet()) {
+            referenced.add("string/" + key);
+        }
+        StringUsageReport report = StringUsageReport.build(defaultStrings, referenced);
+
+        assertEquals(1, report.getDuplicateGroups().size());
+        assertEquals(Arrays.asList("confirm", "dialog_ok", "ok_button"), report.getDuplicateGroups().get(0));
+        assertFalse(report.isUnused("dialog_ok"));
+        assertEquals("confirm", report.getCanonicalKey("dialog_ok"));
+        assertEquals("confirm", report.getCanonicalKey("confirm"));
+        assertEquals("confirm", report.getCanonicalKey("ok_button"));
+        assertEquals("cancel", report.getCanonicalKey("cancel"));
+    }
+
+    @Test
+    void testIndexCandidateFiles() {
+        VirtualFile layout = Mockito.mock(VirtualFile.class);
+        VirtualFile manifest = Mockito.mock(VirtualFile.class);
+        VirtualFile activity = Mockito.mock(VirtualFile.class);
+        Map<VirtualFile, String> contents = new LinkedHashMap<>();
+        contents.put(layout, "<TextView android:text=\"@string/title\" />\n<ListView android:entries=\"@array/planets\" />");
+        contents.put(manifest, "<application android:label=\"@string/app_name\" />");
+        contents.put(activity, "int id = res.getIdentifier(\"dynamic_title\", \"string\", getPackageName());");
+        List<VirtualFile> readFiles = new ArrayList<>();
+
+        // Word search over the fake files: a file is a candidate if its text contains the word anywhere
+        StringUsageAnalyzer.CandidateFileSearch search = new StringUsageAnalyzer.CandidateFileSearch() {
+            @Override
+            public void processFilesWithWord(@NotNull String word, @NotNull Predicate<VirtualFile> processor) {
+                for (Map.Entry<VirtualFile, String> entry : contents.entrySet()) {
+                    if (entry.getValue().contains(word) && !processor.test(entry.getKey())) {
+                        return;
+                    }
+                }
+            }
+
+            @Override
+            public CharSequence getContents(@NotNull VirtualFile file) {
+                readFiles.add(file);
+                return contents.get(file);
+            }
+        };
+
+        ConcurrentMap<String, Set<VirtualFile>> index = new ConcurrentHashMap<>();
+        StringUsageAnalyzer.indexCandidateFiles(new TreeSet<>(Arrays.asList(
+                "array/planets", "string/app_name", "string/dynamic_title", "string/title", "string/unused")),
+                index, new EmptyProgressIndicator(), search);
+
+        assertEquals(new HashSet<>(Arrays.asList("array/planets", "string/app_name", "string/dynamic_title", "string/title")),
+                index.keySet());
+        assertEquals(new HashSet<>(Arrays.asList(layout)), index.get("string/title"));
+        assertEquals(new HashSet<>(Arrays.asList(manifest)), index.get("string/app_name"));
+        // Each candidate file is read once, even when it references several resources
+        assertEquals(Arrays.asList(layout, manifest, activity), readFiles);
+    }
+}
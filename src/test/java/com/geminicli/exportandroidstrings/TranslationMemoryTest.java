@@ -0,0 +1,92 @@
+package com.geminicli.exportandroidstrings;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TranslationMemoryTest {
+
+    private TranslationMemory memory;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, String> defaultStrings = new HashMap<>();
+        Map<String, String> frStrings = new HashMap<>();
+        defaultStrings.put("delete_item", "Delete %1$s?");
+        frStrings.put("delete_item", "Supprimer %1$s ?");
+        defaultStrings.put("connect_error", "Unable to connect to the server %1$s at port %2$d");
+        frStrings.put("connect_error", "Impossible de se connecter au serveur %1$s sur le port %2$d");
+        defaultStrings.put("cancel", "Cancel");
+        defaultStrings.put("cancel_alias", "@string/cancel");
+        frStrings.put("cancel_alias", "@string/cancel");
+
+        Map<String, Map<String, String>> allStringsByLocale = new HashMap<>();
+        allStringsByLocale.put("default", defaultStrings);
+        allStringsByLocale.put("values-fr", frStrings);
+        memory = TranslationMemory.build(allStringsByLocale);
+    }
+
+    @Test
+    void testLookup_punctuationAndCasingDifference() {
+        TranslationMemory.Match match = memory.lookup("delete %1$s ?", "values-fr", 0.9);
+        assertNotNull(match);
+        assertEquals("Supprimer %1$s ?", match.translation);
+        assertEquals(1.0, match.similarity);
+        assertFalse(match.punctuationDiffers);
+    }
+
+    @Test
+    void testLookup_punctuationOnlyDifference() {
+        TranslationMemory.Match match = memory.lookup("Delete %1$s!", "values-fr", 0.5);
+        assertNotNull(match);
+        assertTrue(match.similarity < 1.0);
+        assertTrue(match.punctuationDiffers);
+        assertNull(memory.lookup("Delete %1$s!", "values-fr", 0.95));
+    }
+
+    @Test
+    void testLookup_referencesNotIndexed() {
+        assertNull(memory.lookup("@string/cancel", "values-fr", 0.9));
+        assertEquals(3, memory.size()); // delete_item, connect_error, cancel
+    }
+
+    @Test
+    void testLookup_thresholdNotBelowMinimum() {
+        assertNull(memory.lookup("Something completely different", "values-fr", 0.0));
+    }
+
+    @Test
+    void testLookup_placeholdersRealigned() {
+        TranslationMemory.Match match = memory.lookup("Unable to connect to the server %2$s at port %1$d", "values-fr", 0.9);
+        assertNotNull(match);
+        assertEquals("Impossible de se connecter au serveur %2$s sur le port %1$d", match.translation);
+    }
+
+    @Test
+    void testLookup_belowThreshold() {
+        assertNull(memory.lookup("Something completely different", "values-fr", 0.5));
+    }
+
+    @Test
+    void testLookup_unknownLocale() {
+        assertNull(memory.lookup("Delete %1$s?", "values-de", 0.5));
+    }
+
+    @Test
+    void testRealignPlaceholders_countMismatch() {
+        assertNull(TranslationMemory.realignPlaceholders("Delete %1$s", "Supprimer %1$s", "Delete %1$s from %2$s"));
+    }
+
+    @Test
+    void testNormalize() {
+        assertEquals(TranslationMemory.normalize("Delete %1$s?"), TranslationMemory.normalize("delete  %s !"));
+    }
+}